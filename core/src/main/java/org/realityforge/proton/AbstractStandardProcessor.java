@@ -1,26 +1,44 @@
 package org.realityforge.proton;
 
+import com.palantir.javapoet.ClassName;
 import com.palantir.javapoet.JavaFile;
 import com.palantir.javapoet.TypeSpec;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.FilerException;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
@@ -28,23 +46,60 @@ import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import org.jspecify.annotations.Nullable;
 
 public abstract class AbstractStandardProcessor extends AbstractProcessor {
-    private static final String ORIGINAL_FORMATTER_CLASSNAME = "com.palantir.javaformat.java.Formatter";
-
     private static final List<String> COMMON_OPTIONS = Collections.unmodifiableList(Arrays.asList(
             "verbose_out_of_round.errors",
+            "verbose_out_of_round.max_chars",
             "defer.errors",
             "defer.unresolved",
+            "defer.report_stalled",
             "debug",
+            "debug.log",
             "profile",
+            "profile.report",
+            "profile.top_n",
+            "diagnostics.aggregate",
+            "diagnostics.max_repeats",
             "warnings_as_errors",
-            "format_generated_source"));
+            "format_generated_source",
+            "emit.threads",
+            "format_cache.dir",
+            "format_cache.max_entries",
+            "dependency_order",
+            "gradle_incremental",
+            "analysis_only",
+            "output_cache.dir",
+            "output_cache.max_entries"));
+
+    /**
+     * The common options that do not change the generated output and are excluded from the output cache fingerprint.
+     */
+    private static final Set<String> NON_OUTPUT_OPTIONS = Set.of(
+            "debug",
+            "debug.log",
+            "profile",
+            "profile.report",
+            "profile.top_n",
+            "diagnostics.aggregate",
+            "diagnostics.max_repeats",
+            "emit.threads",
+            "format_cache.dir",
+            "format_cache.max_entries",
+            "output_cache.dir",
+            "output_cache.max_entries");
 
     private static final List<String> FORMATTER_JDK_EXPORTS = Collections.unmodifiableList(Arrays.asList(
             "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
@@ -54,49 +109,433 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
             "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"));
 
+    /**
+     * The largest render buffer, in chars, that is retained by a thread for reuse.
+     * Buffers that grow beyond this while rendering an unusually large type are released after use.
+     */
+    private static final int MAX_RETAINED_RENDER_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Buffers used to render generated source that is to be formatted.
+     * Reusing the buffer avoids repeatedly growing, and copying, a fresh buffer for every generated type.
+     */
+    private static final ThreadLocal<StringBuilder> RENDER_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(16 * 1024));
+
     /**
      * Names of types that have been passed to the processor in the current round or earlier rounds.
      * The set is used to restrict which types the processor will return in <code>getNewTypeElementsToProcess()</code>.
+     * The names are interned as they are retained for the whole compilation and are shared with the deferred sets.
      * This is cleared in when processingOver() returns true.
      */
     private final Set<String> _rootTypeNames = new HashSet<>();
 
+    /**
+     * The root types of the current round keyed by the qualified names of the annotations present on the type or on
+     * one of its nested types. The index is built by a single scan of the round the first time that it is needed and
+     * is shared by every <code>getNewTypeElementsToProcess()</code> call in the round.
+     */
+    private final Map<String, List<TypeElement>> _annotatedTypeIndex = new HashMap<>();
+
+    /**
+     * The round for which the <code>_annotatedTypeIndex</code> was built.
+     */
+    @Nullable
+    private RoundEnvironment _annotatedTypeIndexRound;
+
+    /**
+     * The handlers registered via {@link #addTypeHandler(String, String, Action, StopWatch)} in registration order.
+     */
+    private final List<TypeHandler> _typeHandlers = new ArrayList<>();
+
+    /**
+     * The types deferred by {@link #processRegisteredTypeElements(Set, RoundEnvironment)}, shared by all handlers.
+     */
+    private final DeferredElementSet _registeredDeferredTypes = new DeferredElementSet();
+
+    /**
+     * The deferred types, and the types they wait on, of each deferred set at the end of the last round in which the
+     * set was processed, together with the number of types the processor had emitted at that point.
+     * Used to detect when processing of a deferred set has stalled.
+     */
+    private final Map<DeferredElementSet, DeferralSnapshot> _deferralSnapshots = new HashMap<>();
+    /**
+     * The number of types emitted, or replayed from the output cache, by the processor.
+     */
+    private long _emittedTypeCount;
+
+    /**
+     * The names by which the types promised via {@link #promiseGeneratedType(String)} may be referenced.
+     * This contains the qualified name of each promised type and every suffix of the qualified name that starts
+     * after a '.' character, so that simple and partially qualified references are matched.
+     */
+    private final Set<String> _promisedTypeNames = new HashSet<>();
+    /**
+     * The qualified names of the promised types. Deferred elements that wait on a promised type are revalidated
+     * in the next round, as a promised type may never become a root type, such as in analysis-only mode.
+     */
+    private final Set<String> _promisedQualifiedTypeNames = new LinkedHashSet<>();
+
+    /**
+     * The default validation applied to elements before they are processed.
+     * References to promised types are treated as resolvable. When an element fails this validation, the names of
+     * the unresolved types are recorded so that the element is only revalidated once a type that may resolve one of
+     * those names has been introduced.
+     */
+    private final Predicate<TypeElement> _superficialValidation =
+            e -> SuperficialValidation.validateElement(processingEnv, e, _promisedTypeNames::contains);
+
     private final StopWatch _emitJavaTypeStopWatch = new StopWatch("Emit Java Type");
 
     private final StopWatch _validateElementStopWatch = new StopWatch("Validate Element");
 
     private final StopWatch _extractDeferredStopWatch = new StopWatch("Extract Deferred");
 
+    /**
+     * Generated types that have been emitted but not yet written through the Filer.
+     * This contains types queued until the end of the round and types rendered on the emit executor.
+     * Entries are written in the order they were emitted so the output is independent of worker scheduling.
+     */
+    private final List<PendingTypeSpec> _pendingTypeSpecs = new ArrayList<>();
+
+    /**
+     * Qualified names of the types emitted by the processor.
+     * Used to detect a type being emitted multiple times before the Filer is involved.
+     */
+    private final Set<String> _emittedTypeNames = new HashSet<>();
+
     private boolean _verboseOutOfRoundErrors;
+    private int _verboseOutOfRoundMaxChars;
+
+    /**
+     * The rendering of each element that an out-of-round error has been reported at, keyed by the kind and description
+     * of the element so that the elements of earlier rounds are not retained.
+     * Processors that reject many elements often report errors at the same inherited element, so the rendering is
+     * retained until processing is over rather than repeating the work for every error.
+     */
+    private final Map<String, String> _renderedErrorLocations = new HashMap<>();
+    /**
+     * The number of characters of out-of-round error renderings that have been reported for each processed element,
+     * keyed by the description of the element. Only tracked when <code>verbose_out_of_round.max_chars</code> is set.
+     */
+    private final Map<String, Integer> _renderedErrorChars = new HashMap<>();
     private boolean _deferErrors;
     private boolean _deferUnresolved;
+    private boolean _reportStalledDeferrals;
+    private boolean _dependencyOrder;
+    private boolean _gradleIncremental;
+    private boolean _analysisOnly;
+    /**
+     * True while resource writes on the compiler thread are suppressed for the round, from
+     * {@link #collectRootTypeNames(RoundEnvironment)} until
+     * {@link #clearRootTypeNamesIfProcessingOver(RoundEnvironment)}.
+     */
+    private boolean _roundWritesSuppressed;
+    /**
+     * The suppression of resource writes on the compiler thread before the round began, restored when it ends.
+     */
+    private boolean _writesSuppressedBeforeRound;
     private boolean _debug;
     private boolean _profile;
     private boolean _warningsAsErrors;
     private boolean _formatGeneratedSource;
+    /**
+     * The number of threads that render and format generated types, read from the {@code emit.threads} option.
+     * A value of {@code 0} uses one thread per available processor and negative values are rejected.
+     */
+    private int _emitThreads;
+    private int _formatCacheMaxEntries;
+
+    @Nullable
+    private String _formatCacheDirectory;
+
+    @Nullable
+    private SourceFormatter _formatter;
+
+    /**
+     * The cache of formatted source, created when the formatter is first resolved if a cache directory is configured.
+     */
+    @Nullable
+    private FormattedSourceCache _formatCache;
+
+    @Nullable
+    private ExecutorService _emitExecutor;
+
+    @Nullable
+    private String _outputCacheDirectory;
+
+    private int _outputCacheMaxEntries;
+
+    /**
+     * The cache of the types generated by actions, created when first needed if a cache directory is configured.
+     */
+    @Nullable
+    private OutputCache _outputCache;
+
+    /**
+     * The digest of the processor implementation and options, included in the fingerprint of every cached action.
+     */
+    @Nullable
+    private String _outputCacheSalt;
+
+    /**
+     * The fingerprints of the elements processed by cached actions, which memoizes the supertypes they share.
+     * This is discarded when processing is over as types may change before the processor is next used.
+     */
+    @Nullable
+    private Fingerprints _fingerprints;
 
+    /**
+     * The capture of the types generated by the current action, if the output of the action is being cached.
+     */
+    @Nullable
+    private OutputCapture _actionCapture;
+
+    /**
+     * Captures of actions whose output is to be cached once all of the types they generated have been written.
+     */
+    private final List<OutputCapture> _outputCaptures = new ArrayList<>();
+
+    /**
+     * The element that the current action is processing, if any.
+     * Used to attribute failures in generated types that are written after the action completes.
+     */
     @Nullable
-    private FormatterProxy _formatter;
+    private Element _actionElement;
+
+    /**
+     * True while a batch of elements is being processed, in which case pending types are written at the end of the
+     * batch rather than at the end of each action.
+     */
+    private boolean _batchingEmits;
 
     private int _invalidTypeCount;
 
-    private record FormatterProxy(Object formatter, Method formatSourceMethod) {}
+    /**
+     * The number of warnings and errors reported by the processor, used to detect the actions that report them.
+     */
+    private int _reportedDiagnosticCount;
+
+    /**
+     * The largest number of types held by a deferred set after validating the elements of a round, and the estimated
+     * number of bytes retained by the names in that set. Only tracked when profiling.
+     */
+    private int _peakDeferredTypeCount;
+
+    private long _peakDeferredRetainedBytes;
+
+    /**
+     * The per-element and per-round timings, created when profiling is enabled.
+     */
+    @Nullable
+    private ProfileReport _profileReport;
+
+    /**
+     * The path to which the profile report is written or null to write it to the class output.
+     */
+    @Nullable
+    private String _profileReportPath;
+
+    private int _profileTopN;
+
+    /**
+     * The log that debug messages are written to, or null if they are reported as notes via the Messager.
+     */
+    @Nullable
+    private DebugLog _debugLog;
+
+    /**
+     * The collector that deduplicates diagnostics, or null if diagnostics are passed directly to the Messager.
+     */
+    @Nullable
+    private DiagnosticAggregator _diagnosticAggregator;
+
+    /**
+     * The flight recorder event for the current round, begun by {@link #collectRootTypeNames(RoundEnvironment)}.
+     */
+    private ProcessorEvents.@Nullable RoundEvent _roundEvent;
+
+    private record TypeHandler(
+            String annotationClassname, String label, Action<TypeElement> action, StopWatch actionStopWatch) {}
+
+    /**
+     * A generated type that has been emitted but not yet written. Either the JavaFile or, for a type replayed from
+     * the output cache, the replayed type is present.
+     */
+    private record PendingTypeSpec(
+            @Nullable JavaFile javaFile,
+            @Nullable Future<String> source,
+            @Nullable ReplayedType replayedType,
+            @Nullable Element element,
+            @Nullable OutputCapture capture) {}
+
+    /**
+     * A generated type replayed from the output cache, with its originating elements resolved in the current round.
+     */
+    private record ReplayedType(String typeName, Element[] originatingElements, String source) {}
+
+    private record DeferralSnapshot(Map<String, Set<String>> waitingTypeNames, long emittedTypeCount) {}
+
+    /**
+     * The types generated by an action whose output is to be cached.
+     */
+    private static final class OutputCapture {
+        private final String _entryName;
+
+        private final String _fingerprint;
+
+        private final List<OutputCache.CachedType> _types = new ArrayList<>();
+
+        /**
+         * True if the output can not be cached as the action failed, or generated output that could not be captured.
+         */
+        private boolean _uncacheable;
+
+        OutputCapture(final String entryName, final String fingerprint) {
+            _entryName = entryName;
+            _fingerprint = fingerprint;
+        }
+    }
 
     @FunctionalInterface
     public interface Action<E extends Element> {
         void process(E element) throws Exception;
     }
 
+    /**
+     * An action that generates types from a snapshot of a type element rather than from the element itself.
+     * The action is invoked on a worker thread and must not access the javax.lang.model API or the processor state.
+     *
+     * @see #processTypeSnapshots(Set, RoundEnvironment, String, DeferredElementSet, String, SnapshotAction, StopWatch)
+     */
+    @FunctionalInterface
+    public interface SnapshotAction {
+        /**
+         * Return the types generated from the snapshot.
+         *
+         * @param type the snapshot of the type element.
+         * @return the generated types.
+         * @throws Exception if the types can not be generated.
+         */
+        List<JavaFile> generate(ModelSnapshot.TypeSnapshot type) throws Exception;
+    }
+
+    /**
+     * Runs a {@link SnapshotAction} on the fork-join pool for each element of a batch and emits the generated types
+     * on the compiler thread when the action is applied to the element.
+     */
+    private final class SnapshotGeneration implements Action<TypeElement> {
+        private final SnapshotAction _action;
+
+        private final Map<TypeElement, CompletableFuture<List<JavaFile>>> _results = new HashMap<>();
+
+        SnapshotGeneration(final SnapshotAction action) {
+            _action = action;
+        }
+
+        /**
+         * Snapshot each element on the compiler thread and start generating the types for the snapshots in parallel.
+         */
+        void start(final Collection<TypeElement> elements) {
+            for (final TypeElement element : elements) {
+                CompletableFuture<List<JavaFile>> result;
+                try {
+                    final ModelSnapshot.TypeSnapshot snapshot = ModelSnapshot.of(element);
+                    result = CompletableFuture.supplyAsync(() -> generate(snapshot), ForkJoinPool.commonPool());
+                } catch (final RuntimeException e) {
+                    // Reported against the element when the action is applied to it
+                    result = CompletableFuture.failedFuture(e);
+                }
+                _results.put(element, result);
+            }
+        }
+
+        private List<JavaFile> generate(final ModelSnapshot.TypeSnapshot snapshot) {
+            // Worker threads do not inherit the suppression of resource writes from the compiler thread
+            final boolean previousWritesSuppressed = ResourceUtil.setWritesSuppressed(_analysisOnly);
+            try {
+                return _action.generate(snapshot);
+            } catch (final RuntimeException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                ResourceUtil.setWritesSuppressed(previousWritesSuppressed);
+            }
+        }
+
+        @Override
+        public void process(final TypeElement element) throws Exception {
+            final CompletableFuture<List<JavaFile>> result = _results.remove(element);
+            final List<JavaFile> javaFiles;
+            if (null == result) {
+                javaFiles = _action.generate(ModelSnapshot.of(element));
+            } else {
+                try {
+                    javaFiles = result.join();
+                } catch (final CompletionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof final Exception exception) {
+                        throw exception;
+                    } else if (cause instanceof final Error error) {
+                        throw error;
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+            for (final JavaFile javaFile : javaFiles) {
+                final TypeSpec typeSpec = javaFile.typeSpec();
+                if (prepareEmit(javaFile.packageName(), typeSpec)) {
+                    emitJavaFile(javaFile);
+                }
+            }
+        }
+    }
+
     @Override
     public synchronized void init(final ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
         _verboseOutOfRoundErrors = readBooleanOption("verbose_out_of_round.errors", true);
+        _verboseOutOfRoundMaxChars = readIntOption("verbose_out_of_round.max_chars", Integer.MAX_VALUE);
         _deferErrors = readBooleanOption("defer.errors", true);
         _deferUnresolved = readBooleanOption("defer.unresolved", true);
+        _reportStalledDeferrals = readBooleanOption("defer.report_stalled", false);
+        _dependencyOrder = readBooleanOption("dependency_order", false);
+        _gradleIncremental = readBooleanOption("gradle_incremental", false);
         _debug = readBooleanOption("debug", false);
+        _debugLog = _debug ? openDebugLog(readStringOption("debug.log")) : null;
         _profile = readBooleanOption("profile", false);
+        _profileReport = _profile ? new ProfileReport() : null;
+        _profileReportPath = readStringOption("profile.report");
+        _profileTopN = readIntOption("profile.top_n", 10);
         _warningsAsErrors = readBooleanOption("warnings_as_errors", false);
+        _diagnosticAggregator = readBooleanOption("diagnostics.aggregate", false)
+                ? new DiagnosticAggregator(readIntOption("diagnostics.max_repeats", 10))
+                : null;
         _formatGeneratedSource = readBooleanOption("format_generated_source", true);
+        _analysisOnly = readBooleanOption("analysis_only", false);
+        if (_formatGeneratedSource && !_analysisOnly) {
+            // Load and exercise the shared formatter in the background while the compiler parses and attributes
+            SourceFormatter.prewarm(formatterClassLoader());
+        }
+        final int emitThreads = readIntOption("emit.threads", 1);
+        if (emitThreads < 0) {
+            processingEnv
+                    .getMessager()
+                    .printMessage(
+                            Diagnostic.Kind.WARNING,
+                            "Ignoring invalid value '" + emitThreads + "' for option " + getOptionPrefix()
+                                    + ".emit.threads as it is negative. Use 0 to use one thread per available "
+                                    + "processor. Using the default value 1.");
+            _emitThreads = 1;
+        } else {
+            _emitThreads = 0 == emitThreads ? Runtime.getRuntime().availableProcessors() : emitThreads;
+        }
+        _formatCacheDirectory = readStringOption("format_cache.dir");
+        _formatCacheMaxEntries = readIntOption("format_cache.max_entries", 10000);
+        _outputCacheDirectory = readStringOption("output_cache.dir");
+        _outputCacheMaxEntries = readIntOption("output_cache.max_entries", 10000);
     }
 
     @Override
@@ -105,6 +544,10 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
         for (final String option : COMMON_OPTIONS) {
             options.add(getOptionPrefix() + "." + option);
         }
+        final String incrementalOption = getIncrementalCategory().getGradleOption();
+        if (null != incrementalOption) {
+            options.add(incrementalOption);
+        }
         return Collections.unmodifiableSet(options);
     }
 
@@ -112,7 +555,7 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
         if (isDebugEnabled()) {
             for (final Element element : env.getRootElements()) {
                 if (element instanceof TypeElement) {
-                    debug(() -> "Annotation processing root element " + ((TypeElement) element).getQualifiedName());
+                    debug("Annotation processing root element {}", ((TypeElement) element).getQualifiedName());
                 }
             }
         }
@@ -134,7 +577,7 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
                 label,
                 action,
                 actionStopWatch,
-                e -> SuperficialValidation.validateElement(processingEnv, e));
+                _superficialValidation);
     }
 
     protected final void processTypeElements(
@@ -148,12 +591,112 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             final Predicate<TypeElement> isValidPredicate) {
         final Collection<TypeElement> newElementsToProcess =
                 getNewTypeElementsToProcess(annotations, env, annotationClassname);
-        if (!deferredTypes.getDeferred().isEmpty() || !newElementsToProcess.isEmpty()) {
+        if (!deferredTypes.isEmpty() || !newElementsToProcess.isEmpty()) {
             processTypeElements(
                     env, deferredTypes, newElementsToProcess, label, action, actionStopWatch, isValidPredicate);
         }
     }
 
+    /**
+     * Generate types for the types annotated by the specified annotation, in parallel.
+     * This validates and defers types in the same way as {@link #processTypeElements(Set, RoundEnvironment, String,
+     * DeferredElementSet, String, Action, StopWatch)}, but rather than applying an action to each element on the
+     * compiler thread, a {@link ModelSnapshot} of each element in the batch is taken on the compiler thread and the
+     * action is applied to the snapshots on the common fork-join pool. The generated types are emitted on the
+     * compiler thread in the order that the elements are processed, so the output does not depend on the order in
+     * which the snapshots are processed. Failures are reported against the element that the snapshot was taken of.
+     * The action can not report errors against nested elements, so processors should validate elements on the
+     * compiler thread, such as by an action applied before generation.
+     *
+     * @param annotations         the annotation types requested to be processed.
+     * @param env                 environment for information about the current and prior round.
+     * @param annotationClassname the annotation classname to search for.
+     * @param deferredTypes       the types deferred from earlier rounds.
+     * @param label               the label used when describing the action in debug messages.
+     * @param action              the action that generates types from a snapshot.
+     * @param actionStopWatch     the stop watch used to time the emission of the generated types.
+     */
+    protected final void processTypeSnapshots(
+            final Set<? extends TypeElement> annotations,
+            final RoundEnvironment env,
+            final String annotationClassname,
+            final DeferredElementSet deferredTypes,
+            final String label,
+            final SnapshotAction action,
+            final StopWatch actionStopWatch) {
+        processTypeElements(
+                annotations,
+                env,
+                annotationClassname,
+                deferredTypes,
+                label,
+                new SnapshotGeneration(action),
+                actionStopWatch);
+    }
+
+    /**
+     * Register an action to apply to the types annotated by the specified annotation.
+     * The registered handlers are applied by {@link #processRegisteredTypeElements(Set, RoundEnvironment)}.
+     * This is typically invoked from the processor's constructor or from {@link #init(ProcessingEnvironment)}.
+     *
+     * @param annotationClassname the annotation classname to search for.
+     * @param label               the label used when describing the action in debug messages.
+     * @param action              the action to apply to each annotated type.
+     * @param actionStopWatch     the stop watch used to time the action.
+     */
+    protected final void addTypeHandler(
+            final String annotationClassname,
+            final String label,
+            final Action<TypeElement> action,
+            final StopWatch actionStopWatch) {
+        _typeHandlers.add(new TypeHandler(annotationClassname, label, action, actionStopWatch));
+    }
+
+    /**
+     * Apply the handlers registered via {@link #addTypeHandler(String, String, Action, StopWatch)} to the types
+     * in the current round, and types deferred from earlier rounds, that are annotated by the handlers' annotations.
+     * This is equivalent to invoking {@link #processTypeElements(Set, RoundEnvironment, String, DeferredElementSet,
+     * String, Action, StopWatch)} for each handler in registration order, except that each type is validated once
+     * per round regardless of how many of the handled annotations it carries and a single deferred set is shared by
+     * the handlers. A type is deferred, or processed, by all of its handlers together.
+     *
+     * @param annotations the annotation types requested to be processed.
+     * @param env         environment for information about the current and prior round.
+     */
+    protected final void processRegisteredTypeElements(
+            final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+        final Set<TypeElement> newElementsToProcess = new LinkedHashSet<>();
+        for (final TypeHandler handler : _typeHandlers) {
+            newElementsToProcess.addAll(getNewTypeElementsToProcess(annotations, env, handler.annotationClassname()));
+        }
+        if (!_registeredDeferredTypes.isEmpty() || !newElementsToProcess.isEmpty()) {
+            final boolean deferUnresolved = shouldDeferUnresolved();
+            final Collection<TypeElement> elementsToProcess = orderForProcessing(deferUnresolved
+                    ? deriveElementsToProcess(
+                            env, _registeredDeferredTypes, newElementsToProcess, _superficialValidation)
+                    : newElementsToProcess);
+            // Elements deferred from earlier rounds are not in this round's index so the annotations are re-read
+            final Map<TypeElement, Set<String>> annotatedElements = new LinkedHashMap<>();
+            for (final TypeElement element : elementsToProcess) {
+                annotatedElements.put(element, getAnnotationClassnames(element));
+            }
+            processBatch(env, () -> {
+                for (final TypeHandler handler : _typeHandlers) {
+                    for (final Map.Entry<TypeElement, Set<String>> entry : annotatedElements.entrySet()) {
+                        if (entry.getValue().contains(handler.annotationClassname())) {
+                            performAction(
+                                    env, handler.label(), handler.action(), entry.getKey(), handler.actionStopWatch());
+                        }
+                    }
+                }
+            });
+            if (deferUnresolved) {
+                errorIfDeferredTypesStalled(env, _registeredDeferredTypes, elementsToProcess.isEmpty());
+                errorIfProcessingOverAndDeferredTypesUnprocessed(env, _registeredDeferredTypes);
+            }
+        }
+    }
+
     /**
      * Return the types annotated by specified annotation, processed in the current round.
      *
@@ -162,19 +705,62 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
      * @param annotationClassname the annotation classname to search for.
      * @return the types annotated by specified annotation, processed in the current round.
      */
-    @SuppressWarnings("unchecked")
     protected final Collection<TypeElement> getNewTypeElementsToProcess(
             final Set<? extends TypeElement> annotations,
             final RoundEnvironment env,
             final String annotationClassname) {
-        return annotations.stream()
-                .filter(a -> a.getQualifiedName().toString().equals(annotationClassname))
-                .findAny()
-                .map(a -> (Collection<TypeElement>) env.getElementsAnnotatedWith(a))
-                .map(elements -> elements.stream()
-                        .filter(e -> isRootType((TypeElement) ElementsUtil.getTopLevelElement(e)))
-                        .toList())
-                .orElse(Collections.emptyList());
+        for (final TypeElement annotation : annotations) {
+            if (annotation.getQualifiedName().contentEquals(annotationClassname)) {
+                final List<TypeElement> types = getAnnotatedTypeIndex(env).get(annotationClassname);
+                return null == types ? Collections.emptyList() : Collections.unmodifiableList(types);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private Map<String, List<TypeElement>> getAnnotatedTypeIndex(final RoundEnvironment env) {
+        if (env != _annotatedTypeIndexRound) {
+            _annotatedTypeIndex.clear();
+            for (final Element element : env.getRootElements()) {
+                if (element instanceof final TypeElement typeElement && isRootType(typeElement)) {
+                    indexAnnotatedTypes(typeElement);
+                }
+            }
+            _annotatedTypeIndexRound = env;
+        }
+        return _annotatedTypeIndex;
+    }
+
+    /**
+     * Add the type and its nested types to the index under each annotation present on the type.
+     * Inherited annotations are included to match the behaviour of {@link RoundEnvironment#getElementsAnnotatedWith}.
+     */
+    private void indexAnnotatedTypes(final TypeElement type) {
+        for (final String annotationClassname : getAnnotationClassnames(type)) {
+            _annotatedTypeIndex.computeIfAbsent(annotationClassname, k -> new ArrayList<>()).add(type);
+        }
+        for (final TypeElement nestedType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            indexAnnotatedTypes(nestedType);
+        }
+    }
+
+    private Set<String> getAnnotationClassnames(final TypeElement type) {
+        final Set<String> annotationClassnames = new LinkedHashSet<>();
+        for (final AnnotationMirror annotation : processingEnv.getElementUtils().getAllAnnotationMirrors(type)) {
+            annotationClassnames.add(
+                    ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString());
+        }
+        return annotationClassnames;
+    }
+
+    private static List<String> getRootTypeNames(final RoundEnvironment env) {
+        final List<String> rootTypeNames = new ArrayList<>();
+        for (final Element element : env.getRootElements()) {
+            if (element instanceof final TypeElement typeElement) {
+                rootTypeNames.add(typeElement.getQualifiedName().toString());
+            }
+        }
+        return rootTypeNames;
     }
 
     private boolean isRootType(final TypeElement typeElement) {
@@ -191,8 +777,9 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             final Predicate<TypeElement> isValidPredicate) {
         if (shouldDeferUnresolved()) {
             final Collection<TypeElement> elementsToProcess =
-                    deriveElementsToProcess(deferredSet, elements, isValidPredicate);
+                    deriveElementsToProcess(env, deferredSet, elements, isValidPredicate);
             doProcessTypeElements(env, elementsToProcess, label, action, actionStopWatch);
+            errorIfDeferredTypesStalled(env, deferredSet, elementsToProcess.isEmpty());
             errorIfProcessingOverAndDeferredTypesUnprocessed(env, deferredSet);
         } else {
             doProcessTypeElements(env, new ArrayList<>(elements), label, action, actionStopWatch);
@@ -201,15 +788,67 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
 
     private void errorIfProcessingOverAndDeferredTypesUnprocessed(
             final RoundEnvironment env, final DeferredElementSet deferredSet) {
-        final Set<TypeElement> deferred = deferredSet.getDeferred();
-        if ((env.processingOver() || env.errorRaised()) && !deferred.isEmpty()) {
-            deferred.forEach(e -> processingErrorMessage(env, e));
-            deferredSet.clear();
+        if (env.processingOver() || env.errorRaised()) {
+            _deferralSnapshots.remove(deferredSet);
+            if (!deferredSet.isEmpty()) {
+                deferredSet.extractDeferred(processingEnv).forEach(e -> processingErrorMessage(env, e));
+            }
+        }
+    }
+
+    /**
+     * Report the deferred types as errors if processing of the deferred set has stalled.
+     * Processing has stalled when none of the deferred types became valid in the round, the processor has emitted no
+     * types since the previous round and the deferred types, and the types that they wait on, are unchanged from the
+     * previous round. The deferred types are reported immediately rather than when processing is over so that the
+     * compiler does not run further rounds that can not resolve them.
+     */
+    private void errorIfDeferredTypesStalled(
+            final RoundEnvironment env, final DeferredElementSet deferredSet, final boolean noElementsProcessed) {
+        if (shouldReportStalledDeferrals() && !env.processingOver()) {
+            final Map<String, Set<String>> waitingTypeNames = deferredSet.getWaitingTypeNames();
+            final DeferralSnapshot previous =
+                    _deferralSnapshots.put(deferredSet, new DeferralSnapshot(waitingTypeNames, _emittedTypeCount));
+            if (noElementsProcessed
+                    && null != previous
+                    && previous.emittedTypeCount() == _emittedTypeCount
+                    && !waitingTypeNames.isEmpty()
+                    && waitingTypeNames.equals(previous.waitingTypeNames())) {
+                for (final TypeElement element : deferredSet.extractDeferred(processingEnv)) {
+                    stalledErrorMessage(element, waitingTypeNames);
+                }
+                _deferralSnapshots.remove(deferredSet);
+            }
+        }
+    }
+
+    private void stalledErrorMessage(final TypeElement target, final Map<String, Set<String>> waitingTypeNames) {
+        final String typeName = target.getQualifiedName().toString();
+        final Set<String> unresolvedTypeNames = waitingTypeNames.getOrDefault(typeName, Collections.emptySet());
+        final StringBuilder message = new StringBuilder()
+                .append(getClass().getSimpleName())
+                .append(" unable to process ")
+                .append(typeName)
+                .append(" because processing stalled while it waited on ")
+                .append(unresolvedTypeNames.isEmpty() ? "types that could not be resolved" : unresolvedTypeNames)
+                .append(". Check for compilation errors or a circular dependency with generated code.");
+        if (waitingTypeNames.size() > 1) {
+            message.append(" The other stalled types and the types that they wait on are:");
+            for (final Map.Entry<String, Set<String>> entry : waitingTypeNames.entrySet()) {
+                if (!entry.getKey().equals(typeName)) {
+                    message.append("\n  ")
+                            .append(entry.getKey())
+                            .append(" -> ")
+                            .append(entry.getValue().isEmpty() ? "[unknown]" : entry.getValue());
+                }
+            }
         }
+        printDiagnostic(Diagnostic.Kind.ERROR, message, target, null, null);
     }
 
     protected final void errorIfProcessingOverAndInvalidTypesDetected(final RoundEnvironment env) {
         if (env.processingOver()) {
+            flushDiagnostics();
             if (0 != _invalidTypeCount) {
                 processingEnv
                         .getMessager()
@@ -223,22 +862,163 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
     }
 
     protected final void collectRootTypeNames(final RoundEnvironment env) {
+        enterProfileRound(env);
+        commitRoundEvent();
+        flushDiagnostics();
+        if (_analysisOnly && !_roundWritesSuppressed) {
+            // Suppress the resources written outside actions, such as by the processor at the end of the round
+            _writesSuppressedBeforeRound = ResourceUtil.setWritesSuppressed(true);
+            _roundWritesSuppressed = true;
+        }
+        final var roundEvent = new ProcessorEvents.RoundEvent();
+        roundEvent.begin();
+        _roundEvent = roundEvent;
+        int rootElementCount = 0;
         for (final Element element : env.getRootElements()) {
+            rootElementCount++;
             if (element instanceof TypeElement) {
-                _rootTypeNames.add(((TypeElement) element).getQualifiedName().toString());
+                _rootTypeNames.add(((TypeElement) element).getQualifiedName().toString().intern());
             }
         }
+        roundEvent.rootElementCount = rootElementCount;
+        roundEvent.processingOver = env.processingOver();
     }
 
-    protected final void clearRootTypeNamesIfProcessingOver(final RoundEnvironment env) {
-        if (env.processingOver()) {
-            _rootTypeNames.clear();
+    /**
+     * End the flight recorder event for the current round, if any.
+     * This is invoked at the end of the round by {@link #clearRootTypeNamesIfProcessingOver(RoundEnvironment)}, or
+     * at the start of the next round if the processor does not invoke that method.
+     */
+    private void commitRoundEvent() {
+        final ProcessorEvents.RoundEvent roundEvent = _roundEvent;
+        if (null != roundEvent) {
+            _roundEvent = null;
+            roundEvent.end();
+            if (roundEvent.shouldCommit()) {
+                roundEvent.processor = getClass().getName();
+                roundEvent.commit();
+            }
         }
     }
 
-    protected boolean shouldDeferUnresolved() {
-        return _deferUnresolved;
-    }
+    /**
+     * Promise that the processor will generate the type with the specified name.
+     *
+     * @param className the name of the type that will be generated.
+     * @see #promiseGeneratedType(String)
+     */
+    protected final void promiseGeneratedType(final ClassName className) {
+        promiseGeneratedType(className.canonicalName());
+    }
+
+    /**
+     * Promise that the processor will generate the type with the specified qualified name.
+     * The default validation applied by <code>processTypeElements(...)</code> and
+     * <code>processRegisteredTypeElements(...)</code> treats references to a promised type as resolvable, so
+     * that an element that references a type generated from another element is processed in the same round rather
+     * than being deferred until the generated type has been compiled. Promises should be made before the elements
+     * are validated, typically by deriving the names from the candidate elements via
+     * {@link GeneratorUtil#getGeneratedClassName(TypeElement, String, String)}. Actions processing an element that
+     * references a promised type will observe the promised type as an error type until the type is generated and
+     * should only use the name of the type. Promises are forgotten when processing is over.
+     *
+     * @param qualifiedName the qualified name of the type that will be generated.
+     */
+    protected final void promiseGeneratedType(final String qualifiedName) {
+        _promisedQualifiedTypeNames.add(qualifiedName);
+        _promisedTypeNames.add(qualifiedName);
+        int index = qualifiedName.indexOf('.');
+        while (-1 != index) {
+            _promisedTypeNames.add(qualifiedName.substring(index + 1));
+            index = qualifiedName.indexOf('.', index + 1);
+        }
+    }
+
+    protected final void clearRootTypeNamesIfProcessingOver(final RoundEnvironment env) {
+        commitRoundEvent();
+        // Write any types still queued so they are not lost if the processor did not invoke emitQueuedTypeSpecs(...)
+        emitPendingTypeSpecs(env);
+        flushDiagnostics();
+        if (_roundWritesSuppressed) {
+            // Restore the suppression so that it does not affect other processors run on the compiler thread
+            ResourceUtil.setWritesSuppressed(_writesSuppressedBeforeRound);
+            _roundWritesSuppressed = false;
+        }
+        if (env.processingOver()) {
+            final DiagnosticAggregator diagnosticAggregator = _diagnosticAggregator;
+            if (null != diagnosticAggregator) {
+                diagnosticAggregator.reset();
+            }
+            _renderedErrorLocations.clear();
+            _renderedErrorChars.clear();
+            _emittedTypeNames.clear();
+            shutdownEmitExecutor();
+            closeDebugLog();
+            _promisedTypeNames.clear();
+            _promisedQualifiedTypeNames.clear();
+            _fingerprints = null;
+            _rootTypeNames.clear();
+            _annotatedTypeIndex.clear();
+            _annotatedTypeIndexRound = null;
+        }
+    }
+
+    protected boolean shouldDeferUnresolved() {
+        return _deferUnresolved;
+    }
+
+    /**
+     * Return true if deferred types should be reported as errors as soon as their processing stalls, rather than
+     * when processing is over. Processing stalls when none of the deferred types become valid in a round, the
+     * processor emits no types and neither the deferred types nor the types that they wait on change. A type generated
+     * by another processor can still resolve a stalled type, so processors that depend upon the output of other
+     * processors should not enable this.
+     *
+     * @return true to report deferred types as soon as their processing stalls.
+     */
+    protected boolean shouldReportStalledDeferrals() {
+        return _reportStalledDeferrals;
+    }
+
+    /**
+     * Return true if the types processed in a round should be ordered so that a type is processed after the other
+     * types being processed in the same batch that it references via supertypes, fields or method signatures.
+     * This benefits processors whose actions consult the results of processing the types that they reference.
+     *
+     * @return true to order the types processed in a round by their dependencies.
+     */
+    protected boolean shouldOrderByDependencies() {
+        return _dependencyOrder;
+    }
+
+    private Collection<TypeElement> orderForProcessing(final Collection<TypeElement> elements) {
+        return elements.size() > 1 && shouldOrderByDependencies() ? DependencyOrder.sort(elements) : elements;
+    }
+
+    /**
+     * Return true if types emitted via {@link #emitTypeSpec(String, TypeSpec)} should be queued until the processor
+     * invokes {@link #emitQueuedTypeSpecs(RoundEnvironment)}, rather than written at the end of each batch of actions.
+     * Processors that enable the queue should invoke {@link #emitQueuedTypeSpecs(RoundEnvironment)} at the end of every
+     * round. Types that are still queued when {@link #clearRootTypeNamesIfProcessingOver(RoundEnvironment)} is invoked
+     * are written then.
+     *
+     * @return true if emitted types should be queued until the end of the round.
+     */
+    protected boolean shouldQueueEmission() {
+        return false;
+    }
+
+    /**
+     * Return the category of incremental processing supported by the processor.
+     * The category is reported to Gradle through {@link #getSupportedOptions()} and requires the processor to be
+     * registered as a dynamic processor via {@link GradleIncrementalMetadata}. Isolating processors must emit each
+     * type with originating elements from exactly one top-level type, which is checked when the type is emitted.
+     *
+     * @return the category of incremental processing supported by the processor.
+     */
+    protected IncrementalCategory getIncrementalCategory() {
+        return IncrementalCategory.NONE;
+    }
 
     protected abstract String getIssueTrackerURL();
 
@@ -267,13 +1047,47 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
         _invalidTypeCount++;
         final Diagnostic.Kind kind =
                 !_deferErrors || env.errorRaised() || env.processingOver() ? Diagnostic.Kind.ERROR : warningKind();
-        final Messager messager = processingEnv.getMessager();
-        if (null != annotationValue) {
-            messager.printMessage(kind, message, element, annotation, annotationValue);
-        } else if (null != annotation) {
-            messager.printMessage(kind, message, element, annotation);
+        printDiagnostic(kind, message, element, annotation, annotationValue);
+    }
+
+    /**
+     * Report the diagnostic via the Messager, or collect it if diagnostic aggregation is enabled.
+     * Aggregated diagnostics are deduplicated and passed to the Messager once per round, when
+     * {@link #clearRootTypeNamesIfProcessingOver(RoundEnvironment)} is invoked at the end of the round, or when
+     * {@link #collectRootTypeNames(RoundEnvironment)} or
+     * {@link #errorIfProcessingOverAndInvalidTypesDetected(RoundEnvironment)} is invoked if that is earlier.
+     * Errors are never aggregated so that they are reported in the order that they occur relative to other output.
+     * Diagnostics that bypass the processor, such as those that {@link MemberChecks} prints directly via the
+     * Messager, are not aggregated either.
+     */
+    private void printDiagnostic(
+            final Diagnostic.Kind kind,
+            final CharSequence message,
+            @Nullable final Element element,
+            @Nullable final AnnotationMirror annotation,
+            @Nullable final AnnotationValue annotationValue) {
+        if (Diagnostic.Kind.NOTE != kind && Diagnostic.Kind.OTHER != kind) {
+            _reportedDiagnosticCount++;
+        }
+        final DiagnosticAggregator diagnosticAggregator = _diagnosticAggregator;
+        if (null != diagnosticAggregator && Diagnostic.Kind.ERROR != kind) {
+            diagnosticAggregator.report(kind, message, element, annotation, annotationValue);
         } else {
-            messager.printMessage(kind, message, element);
+            final Messager messager = processingEnv.getMessager();
+            if (null != annotationValue) {
+                messager.printMessage(kind, message, element, annotation, annotationValue);
+            } else if (null != annotation) {
+                messager.printMessage(kind, message, element, annotation);
+            } else {
+                messager.printMessage(kind, message, element);
+            }
+        }
+    }
+
+    private void flushDiagnostics() {
+        final DiagnosticAggregator diagnosticAggregator = _diagnosticAggregator;
+        if (null != diagnosticAggregator) {
+            diagnosticAggregator.flush(processingEnv.getMessager());
         }
     }
 
@@ -286,30 +1100,144 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             stopWatches.add(_validateElementStopWatch);
             collectStopWatches(stopWatches);
             messager.printMessage(Diagnostic.Kind.NOTE, getClass().getSimpleName() + " profiler timings");
-            stopWatches.stream()
-                    .sorted(Comparator.comparing(StopWatch::getTotalDuration).reversed())
-                    .forEach(stopWatch -> {
-                        messager.printMessage(
-                                Diagnostic.Kind.NOTE,
-                                String.format(
-                                        Locale.ROOT,
-                                        "  %30s: %20d",
-                                        stopWatch.getName(),
-                                        stopWatch.getTotalDuration()));
-                    });
+            // Stop watches started within others, such as the emission of types within an action, are nested
+            for (final String line : StopWatch.describeTree(stopWatches)) {
+                messager.printMessage(Diagnostic.Kind.NOTE, "  " + line);
+            }
+            final FormattedSourceCache formatCache = _formatCache;
+            if (null != formatCache) {
+                messager.printMessage(
+                        Diagnostic.Kind.NOTE,
+                        String.format(
+                                Locale.ROOT,
+                                "  %30s: %d hits, %d misses",
+                                "Format Cache",
+                                formatCache.getHitCount(),
+                                formatCache.getMissCount()));
+            }
+            final OutputCache outputCache = _outputCache;
+            if (null != outputCache) {
+                messager.printMessage(
+                        Diagnostic.Kind.NOTE,
+                        String.format(
+                                Locale.ROOT,
+                                "  %30s: %d hits, %d misses",
+                                "Output Cache",
+                                outputCache.getHitCount(),
+                                outputCache.getMissCount()));
+            }
+            long rootTypeNameBytes = 0;
+            for (final String rootTypeName : _rootTypeNames) {
+                rootTypeNameBytes += DeferredElementSet.estimateRetainedBytes(rootTypeName);
+            }
+            messager.printMessage(
+                    Diagnostic.Kind.NOTE,
+                    String.format(
+                            Locale.ROOT,
+                            "  %30s: %d names, ~%d bytes",
+                            "Root Type Names",
+                            _rootTypeNames.size(),
+                            rootTypeNameBytes));
+            messager.printMessage(
+                    Diagnostic.Kind.NOTE,
+                    String.format(
+                            Locale.ROOT,
+                            "  %30s: peak %d types, ~%d bytes",
+                            "Deferred Types",
+                            _peakDeferredTypeCount,
+                            _peakDeferredRetainedBytes));
+            final ProfileReport profileReport = _profileReport;
+            if (null != profileReport) {
+                for (final ProfileReport.RoundProfile round : profileReport.getRounds()) {
+                    messager.printMessage(
+                            Diagnostic.Kind.NOTE,
+                            String.format(
+                                    Locale.ROOT,
+                                    "  %30s: peak ~%d bytes retained heap",
+                                    "Round " + round.getNumber(),
+                                    round.getPeakRetainedHeapBytes()));
+                }
+                writeProfileReport(profileReport, stopWatches);
+            }
+        }
+    }
+
+    /**
+     * Write the per-element and per-round timings as JSON.
+     * The report is written to the path specified by the <code>profile.report</code> option or, if the option is not
+     * specified, to <code>META-INF/proton/[processor classname].profile.json</code> in the class output. The report
+     * lists the slowest <code>profile.top_n</code> elements, defaulting to 10.
+     */
+    private void writeProfileReport(final ProfileReport profileReport, final Collection<StopWatch> stopWatches) {
+        final String json =
+                JsonUtil.renderJson(g -> profileReport.write(g, getClass().getName(), _profileTopN, stopWatches));
+        final String reportPath = _profileReportPath;
+        try {
+            if (null != reportPath) {
+                final Path path = Paths.get(reportPath).toAbsolutePath();
+                final Path directory = path.getParent();
+                if (null != directory) {
+                    Files.createDirectories(directory);
+                }
+                Files.writeString(path, json);
+                debug("Wrote profile report to {}", path);
+            } else {
+                final FileObject resource = processingEnv.getFiler().createResource(
+                        StandardLocation.CLASS_OUTPUT, "", "META-INF/proton/" + getClass().getName() + ".profile.json");
+                try (final Writer writer = resource.openWriter()) {
+                    writer.write(json);
+                }
+                debug("Wrote profile report to {}", resource.toUri());
+            }
+        } catch (final IOException ioe) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.WARNING,
+                    getClass().getSimpleName() + " unable to write the profile report: " + ioe);
         }
     }
 
     protected void collectStopWatches(final Collection<StopWatch> stopWatches) {}
 
+    /**
+     * Record subsequent profiling against the round and sample the heap retained in the round.
+     */
+    private void enterProfileRound(final RoundEnvironment env) {
+        final ProfileReport profileReport = _profileReport;
+        if (null != profileReport) {
+            profileReport.enterRound(env);
+            profileReport.recordRetainedHeap(HeapAccounting.getRetainedHeapBytes());
+        }
+    }
+
     private void doProcessTypeElements(
             final RoundEnvironment env,
             final Collection<TypeElement> elements,
             final String label,
             final Action<TypeElement> action,
             final StopWatch actionStopWatch) {
-        for (final TypeElement element : elements) {
-            performAction(env, label, action, element, actionStopWatch);
+        final Collection<TypeElement> elementsToProcess = orderForProcessing(elements);
+        if (action instanceof final SnapshotGeneration generation) {
+            generation.start(elementsToProcess);
+        }
+        processBatch(env, () -> {
+            for (final TypeElement element : elementsToProcess) {
+                performAction(env, label, action, element, actionStopWatch);
+            }
+        });
+    }
+
+    /**
+     * Perform a batch of actions, writing the types that they emit at the end of the batch.
+     */
+    private void processBatch(final RoundEnvironment env, final Runnable batch) {
+        _batchingEmits = true;
+        try {
+            batch.run();
+        } finally {
+            _batchingEmits = false;
+        }
+        if (!shouldQueueEmission()) {
+            emitPendingTypeSpecs(env);
         }
     }
 
@@ -319,22 +1247,55 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             final Action<E> action,
             final E element,
             final StopWatch actionStopWatch) {
-        debug(() -> "Performing '" + label + "' action on element " + element);
+        debug("Performing '{}' action on element {}", label, element);
+        enterProfileRound(env);
+        final ProfileReport profileReport = _profileReport;
+        final long actionStart = null != profileReport ? System.nanoTime() : 0;
+        final var actionEvent = new ProcessorEvents.ActionEvent();
+        actionEvent.begin();
+        final OutputCapture capture;
+        if (element instanceof final TypeElement typeElement && isOutputCacheEnabled(typeElement)) {
+            final String entryName = getClass().getName() + "\0" + label + "\0" + typeElement.getQualifiedName();
+            final String fingerprint = outputFingerprint(typeElement);
+            final List<OutputCache.CachedType> cachedTypes = outputCache().get(entryName, fingerprint);
+            if (null != cachedTypes) {
+                debug("Replaying the output of the '{}' action on element {} from the output cache", label, element);
+                replayCachedTypes(env, typeElement, cachedTypes);
+                if (null != profileReport) {
+                    profileReport.recordAction(element, System.nanoTime() - actionStart);
+                }
+                commitActionEvent(actionEvent, label, element, true);
+                if (!_batchingEmits && !shouldQueueEmission()) {
+                    emitPendingTypeSpecs(env);
+                }
+                return;
+            }
+            capture = new OutputCapture(entryName, fingerprint);
+        } else {
+            capture = null;
+        }
+        final Element previousActionElement = _actionElement;
+        final OutputCapture previousActionCapture = _actionCapture;
+        _actionElement = element;
+        _actionCapture = capture;
+        final boolean previousWritesSuppressed = ResourceUtil.setWritesSuppressed(_analysisOnly);
+        final int resourceWriteCount = ResourceUtil.getWriteCount();
+        final int reportedDiagnosticCount = _reportedDiagnosticCount;
+        boolean completed = false;
         try {
             if (_profile) {
                 actionStopWatch.start();
             }
-            action.process(element);
-            if (_profile) {
-                actionStopWatch.stop();
+            try {
+                action.process(element);
+            } finally {
+                if (_profile) {
+                    actionStopWatch.stop();
+                }
             }
+            completed = true;
         } catch (final IOException ioe) {
-            final String message = "IO error running the " + getClass().getName() + " processor. This has "
-                    + "resulted in a failure to process the code and has left the compiler in an invalid "
-                    + "state.\n"
-                    + "\n\n"
-                    + printStackTrace(ioe);
-            reportError(env, message, element);
+            reportIOError(env, ioe, element);
         } catch (final ProcessorException e) {
             final Element errorLocation = e.getElement();
             if (_verboseOutOfRoundErrors) {
@@ -365,15 +1326,11 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
                         location = typeElement.getQualifiedName().toString();
                     }
 
-                    final var sw = new StringWriter();
-                    processingEnv.getElementUtils().printElements(sw, errorLocation);
-                    sw.flush();
-
                     final String message = "An error was generated processing the element " + element.getSimpleName()
                             + " but the error was triggered by code not currently being compiled but inherited or "
                             + "implemented by the element and may not be highlighted by your tooling or IDE. The "
                             + "error occurred at "
-                            + location + " and may look like:\n" + sw.toString();
+                            + location + " and may look like:\n" + renderErrorLocation(element, errorLocation);
 
                     reportError(env, message, element);
                 }
@@ -385,19 +1342,247 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
                     e.getAnnotation(),
                     e.getAnnotationValue());
         } catch (final Throwable e) {
-            final String message =
-                    "There was an unexpected error running the " + getClass().getName() + " processor. This has "
-                            + "resulted in a failure to process the code and has left the compiler in an invalid "
-                            + "state. If you believe this is an error with the "
-                            + getClass().getName()
-                            + " processor then please report the failure to the developers so that it can be fixed.\n"
-                            + " Report the error at: "
-                            + getIssueTrackerURL() + "\n" + "\n\n"
-                            + printStackTrace(e);
-            reportError(env, message, element);
+            reportUnexpectedError(env, e, element);
+        } finally {
+            if (null != profileReport) {
+                profileReport.recordAction(element, System.nanoTime() - actionStart);
+                profileReport.recordRetainedHeap(HeapAccounting.getRetainedHeapBytes());
+            }
+            commitActionEvent(actionEvent, label, element, false);
+            _actionElement = previousActionElement;
+            _actionCapture = previousActionCapture;
+            ResourceUtil.setWritesSuppressed(previousWritesSuppressed);
+            if (null != capture) {
+                // Resources are written directly rather than via emitTypeSpec(...) so they can not be replayed, and
+                // diagnostics are not stored so an action that reports them must run in every build to report them
+                if (!completed
+                        || resourceWriteCount != ResourceUtil.getWriteCount()
+                        || reportedDiagnosticCount != _reportedDiagnosticCount) {
+                    capture._uncacheable = true;
+                }
+                _outputCaptures.add(capture);
+            }
+        }
+        if (!_batchingEmits && !shouldQueueEmission()) {
+            emitPendingTypeSpecs(env);
+        }
+        storeOutputCaptures();
+    }
+
+    private void commitActionEvent(
+            final ProcessorEvents.ActionEvent event, final String label, final Element element, final boolean cached) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.processor = getClass().getName();
+            event.element = ElementsUtil.describe(element);
+            event.action = label;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+
+    /**
+     * Return true if the output of actions applied to the element should be cached.
+     * This is only invoked when the <code>output_cache.dir</code> option is specified. The output of an action is
+     * reused when the fingerprint of the element, which covers its declarations and those of its nested types and
+     * supertypes, is unchanged. The fingerprint does not cover other types that the element references, such as the
+     * types of its fields, so the default implementation returns false and processors opt in by returning true for
+     * elements where the action has no side effects other than generating types via
+     * {@link #emitTypeSpec(String, TypeSpec)} and the generated types only depend upon the element's declarations and
+     * those of its nested types and supertypes. The output of an
+     * action that reports a warning or error via this processor is not cached, so the diagnostic is reported by every
+     * build, but diagnostics printed directly via the {@link Messager} are not detected.
+     *
+     * @param element the element.
+     * @return true if the output of actions applied to the element should be cached.
+     */
+    protected boolean shouldCacheOutput(final TypeElement element) {
+        return false;
+    }
+
+    /**
+     * Return a string that identifies the implementation of the processor.
+     * The string is part of the fingerprint of every cached action so that a change to the processor invalidates
+     * the output cached by earlier versions. The default implementation combines the location and modification time
+     * of the class files of the processor and of Proton.
+     *
+     * @return a string that identifies the implementation of the processor.
+     */
+    protected String getOutputCacheVersion() {
+        return classFileVersion(getClass()) + "|" + classFileVersion(AbstractStandardProcessor.class);
+    }
+
+    private static String classFileVersion(final Class<?> type) {
+        final String name = type.getName();
+        final URL classFile = type.getResource(name.substring(name.lastIndexOf('.') + 1) + ".class");
+        if (null == classFile) {
+            return name;
+        } else {
+            try {
+                return classFile + "@" + classFile.openConnection().getLastModified();
+            } catch (final IOException e) {
+                return classFile.toString();
+            }
+        }
+    }
+
+    private boolean isOutputCacheEnabled(final TypeElement element) {
+        return null != _outputCacheDirectory && !_analysisOnly && shouldCacheOutput(element);
+    }
+
+    private OutputCache outputCache() {
+        if (null == _outputCache) {
+            final var outputCache = new OutputCache(
+                    Paths.get(Objects.requireNonNull(_outputCacheDirectory)), _outputCacheMaxEntries);
+            debug("Caching generated output in {}", outputCache.getDirectory());
+            _outputCache = outputCache;
+        }
+        return _outputCache;
+    }
+
+    /**
+     * Return the fingerprint of the inputs to an action applied to the element.
+     * This combines the fingerprint of the element with the processor implementation and the options that may
+     * change the generated output.
+     */
+    private String outputFingerprint(final TypeElement element) {
+        if (null == _outputCacheSalt) {
+            final var salt = new StringBuilder();
+            salt.append(getClass().getName()).append('\n').append(getOutputCacheVersion()).append('\n');
+            final String prefix = getOptionPrefix() + ".";
+            processingEnv.getOptions().entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(prefix)
+                            && !NON_OUTPUT_OPTIONS.contains(e.getKey().substring(prefix.length())))
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> salt.append(e.getKey()).append('=').append(e.getValue()).append('\n'));
+            _outputCacheSalt = salt.toString();
+        }
+        if (null == _fingerprints) {
+            _fingerprints = new Fingerprints();
+        }
+        return _outputCacheSalt + _fingerprints.fingerprint(element);
+    }
+
+    /**
+     * Emit the types generated by an earlier invocation of an action from the output cache.
+     * The types are checked and written, or queued, exactly as if they had been passed to
+     * {@link #emitTypeSpec(String, TypeSpec)} so that their order and timing match freshly generated types.
+     */
+    private void replayCachedTypes(
+            final RoundEnvironment env, final TypeElement element, final List<OutputCache.CachedType> cachedTypes) {
+        try {
+            for (final OutputCache.CachedType cachedType : cachedTypes) {
+                final String typeName = cachedType.typeName();
+                if (!_emittedTypeNames.add(typeName)) {
+                    throw new FilerException("Attempt to emit the generated type " + typeName + " more than once");
+                }
+                _emittedTypeCount++;
+                final List<Element> originatingElements = new ArrayList<>();
+                for (final String originatingTypeName : cachedType.originatingTypeNames()) {
+                    final TypeElement originatingElement =
+                            processingEnv.getElementUtils().getTypeElement(originatingTypeName);
+                    if (null != originatingElement) {
+                        originatingElements.add(originatingElement);
+                    }
+                }
+                if (IncrementalCategory.ISOLATING == getIncrementalCategory()) {
+                    checkIsolatingOriginatingElements(typeName, originatingElements);
+                }
+                if (_analysisOnly) {
+                    // The type is never written so promise it to stop the elements that reference it being deferred
+                    promiseGeneratedType(typeName);
+                } else {
+                    final var replayedType = new ReplayedType(
+                            typeName, originatingElements.toArray(new Element[0]), cachedType.source());
+                    if (_emitThreads > 1 || shouldQueueEmission()) {
+                        _pendingTypeSpecs.add(new PendingTypeSpec(null, null, replayedType, element, null));
+                    } else {
+                        writeReplayedType(replayedType, element);
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            reportIOError(env, ioe, element);
+        }
+    }
+
+    private void writeReplayedType(final ReplayedType replayedType, @Nullable final Element element)
+            throws IOException {
+        writeSource(replayedType.typeName(), replayedType.originatingElements(), replayedType.source(), element);
+        if (null != _profileReport) {
+            _profileReport.recordGeneratedType(element, replayedType.source());
+        }
+    }
+
+    /**
+     * Store the output of the captured actions once all of the types that they generated have been written.
+     */
+    private void storeOutputCaptures() {
+        if (_pendingTypeSpecs.isEmpty() && !_outputCaptures.isEmpty()) {
+            final OutputCache outputCache = outputCache();
+            for (final OutputCapture capture : _outputCaptures) {
+                if (!capture._uncacheable) {
+                    outputCache.put(capture._entryName, capture._fingerprint, capture._types);
+                }
+            }
+            _outputCaptures.clear();
         }
     }
 
+    /**
+     * Return the source-like rendering of the element at which an out-of-round error occurred.
+     * The rendering is memoized per error location, as rendering an inherited type prints every member of the type.
+     * The renderings reported for each processed element are truncated once they exceed
+     * <code>verbose_out_of_round.max_chars</code> characters in total. They are not truncated by default.
+     */
+    private String renderErrorLocation(final Element element, final Element errorLocation) {
+        final String rendering = _renderedErrorLocations.computeIfAbsent(
+                errorLocation.getKind() + " " + ElementsUtil.describe(errorLocation), k -> {
+                    final var sw = new StringWriter();
+                    processingEnv.getElementUtils().printElements(sw, errorLocation);
+                    sw.flush();
+                    return sw.toString();
+                });
+        if (Integer.MAX_VALUE == _verboseOutOfRoundMaxChars) {
+            return rendering;
+        } else {
+            final String elementName = ElementsUtil.describe(element);
+            final int renderedChars = _renderedErrorChars.getOrDefault(elementName, 0);
+            final int maxChars = Math.max(_verboseOutOfRoundMaxChars - renderedChars, 0);
+            if (rendering.length() > maxChars) {
+                _renderedErrorChars.put(elementName, renderedChars + maxChars);
+                return rendering.substring(0, maxChars) + "\n... (" + (rendering.length() - maxChars)
+                        + " more characters omitted)\n";
+            } else {
+                _renderedErrorChars.put(elementName, renderedChars + rendering.length());
+                return rendering;
+            }
+        }
+    }
+
+    private void reportIOError(final RoundEnvironment env, final IOException ioe, @Nullable final Element element) {
+        final String message = "IO error running the " + getClass().getName() + " processor. This has "
+                + "resulted in a failure to process the code and has left the compiler in an invalid "
+                + "state.\n"
+                + "\n\n"
+                + printStackTrace(ioe);
+        reportError(env, message, element);
+    }
+
+    private void reportUnexpectedError(
+            final RoundEnvironment env, final Throwable e, @Nullable final Element element) {
+        final String message =
+                "There was an unexpected error running the " + getClass().getName() + " processor. This has "
+                        + "resulted in a failure to process the code and has left the compiler in an invalid "
+                        + "state. If you believe this is an error with the "
+                        + getClass().getName()
+                        + " processor then please report the failure to the developers so that it can be fixed.\n"
+                        + " Report the error at: "
+                        + getIssueTrackerURL() + "\n" + "\n\n"
+                        + printStackTrace(e);
+        reportError(env, message, element);
+    }
+
     private String printStackTrace(final Throwable e) {
         final var sw = new StringWriter();
         e.printStackTrace(new PrintWriter(sw));
@@ -406,28 +1591,56 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
     }
 
     private Collection<TypeElement> deriveElementsToProcess(
+            final RoundEnvironment env,
             final DeferredElementSet deferredSet,
             final Collection<TypeElement> elements,
             final Predicate<TypeElement> isValidPredicate) {
+        enterProfileRound(env);
+        final ProfileReport profileReport = _profileReport;
+        final long extractStart = null != profileReport ? System.nanoTime() : 0;
         if (_profile) {
             _extractDeferredStopWatch.start();
         }
-        final List<TypeElement> deferred = deferredSet.extractDeferred(processingEnv);
+        // Deferred elements can only become valid once the types that they reference are introduced, and the
+        // types introduced in a round, including those emitted in earlier rounds, are the root types of the round.
+        // Promised types are also treated as introduced as they may never be written, such as in analysis-only mode.
+        // All deferred elements are revalidated in the final round so that none are reported without a final attempt.
+        final List<TypeElement> deferred;
+        if (env.processingOver()) {
+            deferred = deferredSet.extractDeferred(processingEnv);
+        } else {
+            final List<String> newTypeNames = getRootTypeNames(env);
+            newTypeNames.addAll(_promisedQualifiedTypeNames);
+            deferred = deferredSet.extractDeferred(processingEnv, newTypeNames);
+        }
         if (_profile) {
             _extractDeferredStopWatch.stop();
         }
+        if (null != profileReport) {
+            profileReport.recordExtractDeferred(System.nanoTime() - extractStart);
+        }
+        final int waitingFromPreviousRounds = deferredSet.getDeferredTypeNames().size();
+        if (0 != waitingFromPreviousRounds) {
+            debug(() -> waitingFromPreviousRounds + " elements from previous rounds remain deferred as none of "
+                    + "the types that they are waiting on were introduced in this round");
+        }
         final List<TypeElement> elementsToProcess = new ArrayList<>();
         collectElementsToProcess(elements, deferredSet, elementsToProcess, isValidPredicate);
         final int scheduledFromThisRound = elementsToProcess.size();
-        final int deferredFromThisRound = deferredSet.getDeferred().size();
+        final int deferredFromThisRound = deferredSet.getDeferredTypeNames().size() - waitingFromPreviousRounds;
         debug(() -> scheduledFromThisRound + " elements from this round scheduled for processing, "
                 + deferredFromThisRound + " elements from this round deferred for processing in a later round");
         collectElementsToProcess(deferred, deferredSet, elementsToProcess, isValidPredicate);
         final int scheduledFromPreviousRounds = elementsToProcess.size() - scheduledFromThisRound;
-        final int deferredFromPreviousRounds = deferredSet.getDeferred().size() - deferredFromThisRound;
+        final int deferredFromPreviousRounds =
+                deferredSet.getDeferredTypeNames().size() - deferredFromThisRound - waitingFromPreviousRounds;
         debug(() -> scheduledFromPreviousRounds + " elements from previous rounds scheduled for processing, "
                 + deferredFromPreviousRounds
                 + " elements from previous rounds deferred for processing " + "in a later round");
+        if (_profile && deferredSet.getDeferredTypeNames().size() > _peakDeferredTypeCount) {
+            _peakDeferredTypeCount = deferredSet.getDeferredTypeNames().size();
+            _peakDeferredRetainedBytes = deferredSet.estimateRetainedBytes();
+        }
 
         return elementsToProcess;
     }
@@ -437,21 +1650,51 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             final DeferredElementSet deferredSet,
             final List<TypeElement> elementsToProcess,
             final Predicate<TypeElement> isValidPredicate) {
+        final ProfileReport profileReport = _profileReport;
         for (final TypeElement element : elements) {
+            final long validateStart = null != profileReport ? System.nanoTime() : 0;
+            final var validationEvent = new ProcessorEvents.ValidationEvent();
+            validationEvent.begin();
             if (_profile) {
                 _validateElementStopWatch.start();
             }
-            final boolean valid = isValidPredicate.test(element);
+            // A custom predicate may reject an element for reasons other than unresolved types so the
+            // unresolved types are only used to decide when to revalidate the element for the default validation.
+            // The default validation collects the unresolved types in the same traversal that detects them
+            final boolean defaultValidation = _superficialValidation == isValidPredicate;
+            final Set<String> unresolvedTypeNames = defaultValidation ? new LinkedHashSet<>() : Collections.emptySet();
+            final boolean valid = defaultValidation
+                    ? SuperficialValidation.validateElement(
+                            processingEnv, element, _promisedTypeNames::contains, unresolvedTypeNames)
+                    : isValidPredicate.test(element);
             if (_profile) {
                 _validateElementStopWatch.stop();
             }
+            if (null != profileReport) {
+                profileReport.recordValidation(element, System.nanoTime() - validateStart, !valid);
+            }
+            validationEvent.end();
+            if (validationEvent.shouldCommit()) {
+                validationEvent.processor = getClass().getName();
+                validationEvent.element = element.getQualifiedName().toString();
+                validationEvent.valid = valid;
+                validationEvent.commit();
+            }
             if (valid) {
-                debug(() -> "Scheduling element " + element + " for processing");
+                debug("Scheduling element {} for processing", element);
                 elementsToProcess.add(element);
             } else {
                 debug(() -> "Deferring element " + element + " for processing in a later "
-                        + "round as it failed superficial validation");
-                deferredSet.deferElement(element);
+                        + "round as it failed superficial validation"
+                        + (unresolvedTypeNames.isEmpty() ? "" : ". Unresolved types: " + unresolvedTypeNames));
+                deferredSet.deferElement(element, unresolvedTypeNames);
+                final var deferralEvent = new ProcessorEvents.DeferralEvent();
+                if (deferralEvent.shouldCommit()) {
+                    deferralEvent.processor = getClass().getName();
+                    deferralEvent.element = element.getQualifiedName().toString();
+                    deferralEvent.unresolvedTypes = String.join(", ", unresolvedTypeNames);
+                    deferralEvent.commit();
+                }
             }
         }
     }
@@ -460,15 +1703,30 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
         return _profile;
     }
 
+    /**
+     * Return true if the processor is validating the source without generating any output.
+     * In this mode {@link #emitTypeSpec(String, TypeSpec)} discards the type rather than rendering, formatting and
+     * writing it, and {@link ResourceUtil} and {@link JsonUtil} discard the resources written by actions and, between
+     * {@link #collectRootTypeNames(RoundEnvironment)} and
+     * {@link #clearRootTypeNamesIfProcessingOver(RoundEnvironment)}, by the rest of the round. The discarded types
+     * are promised via {@link #promiseGeneratedType(String)} so that the elements that reference them are still
+     * validated, in the next round. Processors may use this to skip any other work that only contributes to the output.
+     *
+     * @return true if the processor is validating the source without generating any output.
+     */
+    protected final boolean isAnalysisOnly() {
+        return _analysisOnly;
+    }
+
     protected final void warning(final CharSequence message, @Nullable final Element element) {
-        processingEnv.getMessager().printMessage(warningKind(), message, element);
+        printDiagnostic(warningKind(), message, element, null, null);
     }
 
     protected final void warning(
             final CharSequence message,
             @Nullable final Element element,
             @Nullable final AnnotationMirror annotationMirror) {
-        processingEnv.getMessager().printMessage(warningKind(), message, element, annotationMirror);
+        printDiagnostic(warningKind(), message, element, annotationMirror, null);
     }
 
     protected final void warning(
@@ -476,7 +1734,7 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             @Nullable final Element element,
             @Nullable final AnnotationMirror annotationMirror,
             @Nullable final AnnotationValue annotationValue) {
-        processingEnv.getMessager().printMessage(warningKind(), message, element, annotationMirror, annotationValue);
+        printDiagnostic(warningKind(), message, element, annotationMirror, annotationValue);
     }
 
     protected final Diagnostic.Kind warningKind() {
@@ -493,73 +1751,417 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
 
     protected final void debug(final Supplier<String> messageSupplier) {
         if (isDebugEnabled()) {
-            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, messageSupplier.get());
+            printDebug(messageSupplier.get());
+        }
+    }
+
+    protected final void debug(final String message) {
+        if (isDebugEnabled()) {
+            printDebug(message);
+        }
+    }
+
+    /**
+     * Report a debug message built by substituting the argument for the <code>{}</code> placeholder in the pattern.
+     * The message is only built if debugging is enabled, so callers need not guard the call or capture a lambda.
+     *
+     * @param pattern the message pattern.
+     * @param arg     the argument.
+     */
+    protected final void debug(final String pattern, @Nullable final Object arg) {
+        if (isDebugEnabled()) {
+            printDebug(DebugLog.format(pattern, arg));
+        }
+    }
+
+    protected final void debug(final String pattern, @Nullable final Object arg1, @Nullable final Object arg2) {
+        if (isDebugEnabled()) {
+            printDebug(DebugLog.format(pattern, arg1, arg2));
+        }
+    }
+
+    protected final void debug(
+            final String pattern,
+            @Nullable final Object arg1,
+            @Nullable final Object arg2,
+            @Nullable final Object arg3) {
+        if (isDebugEnabled()) {
+            printDebug(DebugLog.format(pattern, arg1, arg2, arg3));
+        }
+    }
+
+    private void printDebug(final String message) {
+        final DebugLog debugLog = _debugLog;
+        if (null != debugLog) {
+            debugLog.log(message);
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message);
+        }
+    }
+
+    /**
+     * Open the file named by the <code>debug.log</code> option that debug messages are written to.
+     * Writing debug messages to a file avoids the cost of reporting a large number of notes through the compiler
+     * and the build tool. Messages are reported via the Messager if the option is unset or the file can not be opened.
+     */
+    @Nullable
+    private DebugLog openDebugLog(@Nullable final String debugLogPath) {
+        if (null != debugLogPath) {
+            try {
+                return new DebugLog(Paths.get(debugLogPath), getClass().getSimpleName() + " Debug Log");
+            } catch (final IOException ioe) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.WARNING,
+                        getClass().getSimpleName() + " unable to open the debug log: " + ioe);
+            }
+        }
+        return null;
+    }
+
+    private void closeDebugLog() {
+        final DebugLog debugLog = _debugLog;
+        if (null != debugLog) {
+            _debugLog = null;
+            try {
+                debugLog.close();
+            } catch (final IOException ioe) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.WARNING,
+                        getClass().getSimpleName() + " unable to write the debug log " + debugLog.getPath()
+                                + ": " + ioe);
+            }
         }
     }
 
     protected final void emitTypeSpec(final String packageName, final TypeSpec typeSpec) throws IOException {
+        if (prepareEmit(packageName, typeSpec)) {
+            emitJavaFile(JavaFile.builder(packageName, typeSpec)
+                    .skipJavaLangImports(true)
+                    .build());
+        }
+    }
+
+    /**
+     * Check that the type can be emitted and record that it has been emitted.
+     *
+     * @return true if the type should be written, or false if it is discarded in analysis-only mode.
+     */
+    private boolean prepareEmit(final String packageName, final TypeSpec typeSpec) throws FilerException {
+        final String typeName = packageName.isEmpty() ? typeSpec.name() : packageName + "." + typeSpec.name();
+        if (!_emittedTypeNames.add(typeName)) {
+            throw new FilerException("Attempt to emit the generated type " + typeName + " more than once");
+        }
+        _emittedTypeCount++;
+        if (IncrementalCategory.ISOLATING == getIncrementalCategory()) {
+            checkIsolatingOriginatingElements(typeName, getOriginatingElements(typeSpec));
+        }
+        if (_analysisOnly) {
+            // The type is never written so promise it to stop the elements that reference it being deferred
+            promiseGeneratedType(typeName);
+            return false;
+        }
+        return true;
+    }
+
+    private void emitJavaFile(final JavaFile javaFile) throws IOException {
+        final long emitStart = null != _profileReport ? System.nanoTime() : 0;
         if (_profile) {
             _emitJavaTypeStopWatch.start();
         }
-        final var javaFile = JavaFile.builder(packageName, typeSpec)
-                .skipJavaLangImports(true)
-                .build();
-        if (_formatGeneratedSource) {
-            writeFormattedJavaFile(javaFile, formatSource(javaFile));
+        try {
+            if (_emitThreads > 1 && _formatGeneratedSource) {
+                // Resolve the formatter on the compiler thread so workers never race to create it
+                final SourceFormatter formatter = resolveFormatter();
+                final Future<String> source = emitExecutor().submit(() -> formatSource(formatter, javaFile));
+                _pendingTypeSpecs.add(new PendingTypeSpec(javaFile, source, null, _actionElement, _actionCapture));
+            } else if (_emitThreads > 1 || shouldQueueEmission()) {
+                // Unformatted source is not rendered until written, when it is streamed directly into the Filer
+                _pendingTypeSpecs.add(new PendingTypeSpec(javaFile, null, null, _actionElement, _actionCapture));
+            } else {
+                writeJavaFile(javaFile, _actionElement, _actionCapture);
+            }
+        } finally {
+            if (_profile) {
+                _emitJavaTypeStopWatch.stop();
+            }
+        }
+        if (null != _profileReport) {
+            _profileReport.recordEmission(_actionElement, System.nanoTime() - emitStart, true);
+        }
+    }
+
+    /**
+     * Verify that the type originates from exactly one top-level type, as required by Gradle for the type to be
+     * recompiled incrementally by an isolating processor. Originating elements nested in the same top-level type are
+     * treated as a single originating type, and the supertypes of the first originating type are ignored as described
+     * by {@link #omitSuperTypesOfOriginatingType(List)}.
+     */
+    private void checkIsolatingOriginatingElements(
+            final String typeName, final List<? extends Element> originatingElements) throws FilerException {
+        final Set<String> originatingTypeNames = new TreeSet<>();
+        for (final Element originatingElement : omitSuperTypesOfOriginatingType(originatingElements)) {
+            if (originatingElement instanceof final PackageElement packageElement) {
+                originatingTypeNames.add(packageElement.getQualifiedName().toString());
+            } else {
+                final var topLevelType = (TypeElement) ElementsUtil.getTopLevelElement(originatingElement);
+                originatingTypeNames.add(topLevelType.getQualifiedName().toString());
+            }
+        }
+        if (1 != originatingTypeNames.size()) {
+            throw new FilerException("The isolating processor " + getClass().getName() + " emitted the generated "
+                    + "type " + typeName + " with originating elements from " + originatingTypeNames.size()
+                    + " top-level types " + originatingTypeNames + " but must specify exactly one top-level type "
+                    + "or Gradle will recompile every source. Add only the type that the generated type is derived "
+                    + "from, and optionally its supertypes, as originating elements.");
+        }
+    }
+
+    /**
+     * Return the originating elements passed to the Filer when the type is written.
+     * When the processor is isolating and the {@code gradle_incremental} option is enabled, the supertypes of the
+     * first originating type are omitted as described by {@link #omitSuperTypesOfOriginatingType(List)}. Other build
+     * tools may rely on the supertypes to track dependencies, so they are otherwise passed to the Filer unchanged.
+     */
+    private List<? extends Element> getOriginatingElements(final TypeSpec typeSpec) {
+        final List<? extends Element> originatingElements = typeSpec.originatingElements();
+        return _gradleIncremental && IncrementalCategory.ISOLATING == getIncrementalCategory()
+                ? omitSuperTypesOfOriginatingType(originatingElements)
+                : originatingElements;
+    }
+
+    /**
+     * Return the originating elements without the supertypes of the first originating type.
+     * {@link GeneratorUtil#addOriginatingTypes(ProcessingEnvironment, TypeElement, TypeSpec.Builder)} adds the
+     * supertypes of a type as originating elements, which aggregating processors require, but Gradle requires an
+     * isolating processor to specify exactly one originating top-level type. Gradle tracks the supertypes of the
+     * originating type of an isolating processor itself, so omitting them lets the same type spec be emitted by
+     * processors of either category.
+     */
+    private static List<? extends Element> omitSuperTypesOfOriginatingType(
+            final List<? extends Element> originatingElements) {
+        if (originatingElements.size() > 1
+                && originatingElements.get(0) instanceof final TypeElement originatingType) {
+            final Set<String> superTypeNames = new HashSet<>();
+            collectSuperTypeNames(originatingType, superTypeNames);
+            final List<Element> elements = new ArrayList<>(originatingElements.size());
+            for (final Element originatingElement : originatingElements) {
+                if (!(originatingElement instanceof final TypeElement typeElement
+                        && superTypeNames.contains(typeElement.getQualifiedName().toString()))) {
+                    elements.add(originatingElement);
+                }
+            }
+            return elements;
         } else {
-            javaFile.writeTo(processingEnv.getFiler());
+            return originatingElements;
         }
-        if (_profile) {
-            _emitJavaTypeStopWatch.stop();
+    }
+
+    private static void collectSuperTypeNames(final TypeElement type, final Set<String> superTypeNames) {
+        final List<TypeMirror> superTypes = new ArrayList<>(type.getInterfaces());
+        superTypes.add(type.getSuperclass());
+        for (final TypeMirror superType : superTypes) {
+            if (TypeKind.DECLARED == superType.getKind()) {
+                final var superElement = (TypeElement) ((DeclaredType) superType).asElement();
+                if (superTypeNames.add(superElement.getQualifiedName().toString())) {
+                    collectSuperTypeNames(superElement, superTypeNames);
+                }
+            }
         }
     }
 
-    private String formatSource(final JavaFile javaFile) throws IOException {
+    /**
+     * Write the types queued by {@link #emitTypeSpec(String, TypeSpec)} when {@link #shouldQueueEmission()} returns
+     * true. This should be invoked at the end of every round by processors that enable the emission queue.
+     *
+     * @param env the round environment.
+     */
+    protected final void emitQueuedTypeSpecs(final RoundEnvironment env) {
+        emitPendingTypeSpecs(env);
+    }
+
+    /**
+     * Write any generated types that have been emitted but not yet written.
+     * The types are written on the calling thread, as the Filer is not thread-safe, and in the order that they were
+     * emitted. Failures are reported against the element whose action emitted the type.
+     *
+     * @param env the round environment.
+     */
+    private void emitPendingTypeSpecs(final RoundEnvironment env) {
+        if (!_pendingTypeSpecs.isEmpty()) {
+            enterProfileRound(env);
+            final ProfileReport profileReport = _profileReport;
+            if (_profile) {
+                _emitJavaTypeStopWatch.start();
+            }
+            final List<PendingTypeSpec> pendingTypeSpecs = new ArrayList<>(_pendingTypeSpecs);
+            _pendingTypeSpecs.clear();
+            for (final PendingTypeSpec pending : pendingTypeSpecs) {
+                final long emitStart = null != profileReport ? System.nanoTime() : 0;
+                try {
+                    final ReplayedType replayedType = pending.replayedType();
+                    final JavaFile javaFile = pending.javaFile();
+                    final Future<String> source = pending.source();
+                    if (null != replayedType) {
+                        writeReplayedType(replayedType, pending.element());
+                    } else if (null == source) {
+                        writeJavaFile(Objects.requireNonNull(javaFile), pending.element(), pending.capture());
+                    } else {
+                        writeJavaFile(
+                                Objects.requireNonNull(javaFile),
+                                awaitSource(source),
+                                pending.element(),
+                                pending.capture());
+                    }
+                } catch (final IOException ioe) {
+                    markUncacheable(pending.capture());
+                    reportIOError(env, ioe, pending.element());
+                } catch (final RuntimeException | Error e) {
+                    markUncacheable(pending.capture());
+                    reportUnexpectedError(env, e, pending.element());
+                }
+                if (null != profileReport) {
+                    profileReport.recordEmission(pending.element(), System.nanoTime() - emitStart, false);
+                }
+            }
+            if (_profile) {
+                _emitJavaTypeStopWatch.stop();
+            }
+            storeOutputCaptures();
+        }
+    }
+
+    private static void markUncacheable(@Nullable final OutputCapture capture) {
+        if (null != capture) {
+            capture._uncacheable = true;
+        }
+    }
+
+    private String awaitSource(final Future<String> source) throws IOException {
+        try {
+            return source.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final var exception = new InterruptedIOException("Interrupted while rendering generated source");
+            exception.initCause(e);
+            throw exception;
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof final IOException ioe) {
+                throw ioe;
+            } else if (cause instanceof final RuntimeException re) {
+                throw re;
+            } else if (cause instanceof final Error error) {
+                throw error;
+            } else {
+                throw new IOException("Failed to render generated source", null == cause ? e : cause);
+            }
+        }
+    }
+
+    private ExecutorService emitExecutor() {
+        if (null == _emitExecutor) {
+            final var executor = new ThreadPoolExecutor(
+                    _emitThreads, _emitThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), this::newEmitThread);
+            // Idle workers exit so that processors in long-lived compiler daemons do not retain threads
+            executor.allowCoreThreadTimeOut(true);
+            _emitExecutor = executor;
+        }
+        return _emitExecutor;
+    }
+
+    /**
+     * Stop the emit workers once processing is over so that their threads do not retain the processor, and its
+     * classloader, in a long-lived compiler daemon until they time out.
+     */
+    private void shutdownEmitExecutor() {
+        final ExecutorService executor = _emitExecutor;
+        if (null != executor) {
+            _emitExecutor = null;
+            executor.shutdown();
+        }
+    }
+
+    private Thread newEmitThread(final Runnable runnable) {
+        final var thread = new Thread(runnable, getClass().getSimpleName() + " Source Emitter");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private SourceFormatter resolveFormatter() throws IOException {
         try {
-            final FormatterProxy formatter = formatter();
-            return (String) formatter.formatSourceMethod().invoke(formatter.formatter(), javaFile.toString());
+            final SourceFormatter formatter = formatter();
+            if (null == _formatCache && null != _formatCacheDirectory) {
+                final var formatCache = new FormattedSourceCache(
+                        Paths.get(_formatCacheDirectory), _formatCacheMaxEntries, formatter.getVersion());
+                // Trim entries left by earlier compilations before this compilation adds its own
+                formatCache.evict();
+                debug("Caching formatted source in {}", formatCache.getDirectory());
+                _formatCache = formatCache;
+            }
+            return formatter;
         } catch (final ClassNotFoundException e) {
             throw newFormatterFailure("locate source formatter", e);
-        } catch (final InvocationTargetException e) {
-            final Throwable cause = e.getCause();
-            throw newFormatterFailure("format generated source", null == cause ? e : cause);
-        } catch (final ReflectiveOperationException | LinkageError e) {
+        } catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
             throw newFormatterFailure("format generated source", e);
         }
     }
 
-    private FormatterProxy formatter() throws ReflectiveOperationException {
-        if (null == _formatter) {
-            _formatter = createFormatter();
+    private String formatSource(final SourceFormatter formatter, final JavaFile javaFile) throws IOException {
+        final var formatEvent = new ProcessorEvents.FormatEvent();
+        formatEvent.begin();
+        final String source = renderSource(javaFile);
+        // The cache is created by resolveFormatter() on the compiler thread before any formatting work is submitted
+        final FormattedSourceCache formatCache = _formatCache;
+        final String cachedSource = null != formatCache ? formatCache.get(source) : null;
+        final String formattedSource;
+        if (null != cachedSource) {
+            formattedSource = cachedSource;
+        } else {
+            formattedSource = formatSource(formatter, source);
+            if (null != formatCache) {
+                formatCache.put(source, formattedSource);
+            }
         }
-        return _formatter;
+        formatEvent.end();
+        if (formatEvent.shouldCommit()) {
+            formatEvent.processor = getClass().getName();
+            formatEvent.type = getQualifiedTypeName(javaFile);
+            formatEvent.cacheHit = null != cachedSource;
+            formatEvent.commit();
+        }
+        return formattedSource;
     }
 
-    private FormatterProxy createFormatter() throws ReflectiveOperationException {
+    private String formatSource(final SourceFormatter formatter, final String source) throws IOException {
         try {
-            return createFormatter(ORIGINAL_FORMATTER_CLASSNAME);
-        } catch (final ClassNotFoundException originalNotFound) {
-            try {
-                return createFormatter(getVendorFormatterClassname());
-            } catch (final ClassNotFoundException vendorNotFound) {
-                vendorNotFound.addSuppressed(originalNotFound);
-                throw vendorNotFound;
-            }
+            return formatter.format(source);
+        } catch (final Exception | LinkageError e) {
+            throw newFormatterFailure("format generated source", e);
         }
     }
 
-    private FormatterProxy createFormatter(final String formatterClassName) throws ReflectiveOperationException {
+    /**
+     * Return the formatter shared by all processors loaded by the same classloader.
+     * The formatter is typically already created by the warm-up started in {@link #init(ProcessingEnvironment)}.
+     */
+    private SourceFormatter formatter() throws ReflectiveOperationException {
+        if (null == _formatter) {
+            _formatter = SourceFormatter.get(formatterClassLoader());
+        }
+        return _formatter;
+    }
+
+    private static ClassLoader formatterClassLoader() {
         final ClassLoader classLoader = AbstractStandardProcessor.class.getClassLoader();
-        final Class<?> formatterClass = Class.forName(formatterClassName, true, classLoader);
-        final Object formatter = formatterClass.getMethod("create").invoke(null);
-        return new FormatterProxy(formatter, formatterClass.getMethod("formatSource", String.class));
+        return null != classLoader ? classLoader : ClassLoader.getSystemClassLoader();
     }
 
     private IOException newFormatterFailure(final String action, final Throwable cause) {
         return new IOException(
                 "Unable to " + action + " while " + getOptionPrefix() + ".format_generated_source=true. "
                         + "Proton attempted to load source formatter classes "
-                        + ORIGINAL_FORMATTER_CLASSNAME + " and " + getVendorFormatterClassname()
+                        + SourceFormatter.ORIGINAL_FORMATTER_CLASSNAME + " and "
+                        + SourceFormatter.getVendorFormatterClassname()
                         + ". If these classes are missing, ensure the annotation processor path contains"
                         + " palantir-java-format or a processor jar that includes Proton's bundled vendor formatter"
                         + " classes. Downstream processors that shade Proton must include Proton's bundled"
@@ -569,19 +2171,85 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
                 cause);
     }
 
-    private String getVendorFormatterClassname() {
-        return AbstractStandardProcessor.class.getPackageName() + ".vendor.javaformat.java.Formatter";
+    /**
+     * Render the generated source into a String using a reusable per-thread buffer.
+     * The returned String is the only full copy of the unformatted source and is released once formatted.
+     */
+    private static String renderSource(final JavaFile javaFile) throws IOException {
+        final StringBuilder buffer = RENDER_BUFFER.get();
+        buffer.setLength(0);
+        try {
+            javaFile.writeTo(buffer);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_RENDER_BUFFER_SIZE) {
+                RENDER_BUFFER.remove();
+            } else {
+                buffer.setLength(0);
+            }
+        }
     }
 
-    private void writeFormattedJavaFile(final JavaFile javaFile, final String formattedSource) throws IOException {
+    private void writeJavaFile(
+            final JavaFile javaFile, @Nullable final Element element, @Nullable final OutputCapture capture)
+            throws IOException {
+        if (_formatGeneratedSource) {
+            writeJavaFile(javaFile, formatSource(resolveFormatter(), javaFile), element, capture);
+        } else if (null != capture
+                || null != _profileReport
+                || getOriginatingElements(javaFile.typeSpec()).size()
+                        != javaFile.typeSpec().originatingElements().size()) {
+            // The source is retained by the capture, or measured by the profiler, or written with fewer originating
+            // elements than the JavaFile would pass to the Filer, so it must be rendered
+            writeJavaFile(javaFile, renderSource(javaFile), element, capture);
+        } else {
+            // Stream the source straight into the Filer so that no intermediate copy of the source is created
+            final var writeEvent = new ProcessorEvents.FilerWriteEvent();
+            writeEvent.begin();
+            javaFile.writeTo(processingEnv.getFiler());
+            commitFilerWriteEvent(writeEvent, getQualifiedTypeName(javaFile), element, null);
+        }
+    }
+
+    private void writeJavaFile(
+            final JavaFile javaFile,
+            final String source,
+            @Nullable final Element element,
+            @Nullable final OutputCapture capture)
+            throws IOException {
         final TypeSpec typeSpec = javaFile.typeSpec();
         final String packageName = javaFile.packageName();
         final String fileName = packageName.isEmpty() ? typeSpec.name() : packageName + "." + typeSpec.name();
-        final JavaFileObject sourceFile = processingEnv
-                .getFiler()
-                .createSourceFile(fileName, typeSpec.originatingElements().toArray(new Element[0]));
+        final Element[] originatingElements = getOriginatingElements(typeSpec).toArray(new Element[0]);
+        writeSource(fileName, originatingElements, source, element);
+        if (null != _profileReport) {
+            _profileReport.recordGeneratedType(element, source);
+        }
+        if (null != capture) {
+            final List<String> originatingTypeNames = new ArrayList<>(originatingElements.length);
+            for (final Element originatingElement : originatingElements) {
+                if (originatingElement instanceof final TypeElement typeElement) {
+                    originatingTypeNames.add(typeElement.getQualifiedName().toString());
+                } else {
+                    // Only types can be resolved by name when the output is replayed
+                    capture._uncacheable = true;
+                }
+            }
+            capture._types.add(new OutputCache.CachedType(fileName, originatingTypeNames, source));
+        }
+    }
+
+    private void writeSource(
+            final String fileName,
+            final Element[] originatingElements,
+            final String source,
+            @Nullable final Element element)
+            throws IOException {
+        final var writeEvent = new ProcessorEvents.FilerWriteEvent();
+        writeEvent.begin();
+        final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(fileName, originatingElements);
         try (final Writer writer = sourceFile.openWriter()) {
-            writer.write(formattedSource);
+            writer.write(source);
         } catch (final Exception e) {
             try {
                 sourceFile.delete();
@@ -590,10 +2258,62 @@ public abstract class AbstractStandardProcessor extends AbstractProcessor {
             }
             throw e;
         }
+        commitFilerWriteEvent(writeEvent, fileName, element, source);
+    }
+
+    /**
+     * Complete the flight recorder event for a write of the generated type.
+     * The source is null if it was streamed into the Filer, in which case the size of the source is unknown.
+     */
+    private void commitFilerWriteEvent(
+            final ProcessorEvents.FilerWriteEvent event,
+            final String typeName,
+            @Nullable final Element element,
+            @Nullable final String source) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.processor = getClass().getName();
+            event.element = null != element ? ElementsUtil.describe(element) : null;
+            event.type = typeName;
+            event.size = null != source ? ProfileReport.utf8Length(source) : -1;
+            event.commit();
+        }
+    }
+
+    private static String getQualifiedTypeName(final JavaFile javaFile) {
+        final String packageName = javaFile.packageName();
+        final String name = javaFile.typeSpec().name();
+        return packageName.isEmpty() ? name : packageName + "." + name;
     }
 
     protected final boolean readBooleanOption(final String relativeKey, final boolean defaultValue) {
         final String optionValue = processingEnv.getOptions().get(getOptionPrefix() + "." + relativeKey);
         return null == optionValue ? defaultValue : "true".equals(optionValue);
     }
+
+    @Nullable
+    protected final String readStringOption(final String relativeKey) {
+        return processingEnv.getOptions().get(getOptionPrefix() + "." + relativeKey);
+    }
+
+    protected final int readIntOption(final String relativeKey, final int defaultValue) {
+        final String key = getOptionPrefix() + "." + relativeKey;
+        final String optionValue = processingEnv.getOptions().get(key);
+        if (null == optionValue) {
+            return defaultValue;
+        } else {
+            try {
+                return Integer.parseInt(optionValue.trim());
+            } catch (final NumberFormatException e) {
+                processingEnv
+                        .getMessager()
+                        .printMessage(
+                                Diagnostic.Kind.WARNING,
+                                "Ignoring invalid value '" + optionValue + "' for option " + key
+                                        + " as it is not an integer. Using the default value " + defaultValue
+                                        + ".");
+                return defaultValue;
+            }
+        }
+    }
 }
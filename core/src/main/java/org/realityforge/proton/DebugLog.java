@@ -0,0 +1,180 @@
+package org.realityforge.proton;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A debug log that writes messages to a file on a background thread.
+ * Messages are appended to a bounded queue by the threads that log them and written through a buffered writer by a
+ * daemon thread, which flushes the writer whenever the queue is empty. Threads that log messages faster than they
+ * can be written block until there is space in the queue, so the memory used by the log is bounded.
+ * A failure to write the file is reported by {@link #close()} and later messages are discarded.
+ */
+final class DebugLog {
+    /**
+     * The number of messages that may be queued before the threads that log messages block.
+     */
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    /**
+     * The entry queued to stop the writer thread. It is not a String so can not be confused with a logged message.
+     */
+    private static final Object CLOSE = new Object();
+
+    private final Path _path;
+    private final BufferedWriter _writer;
+    private final BlockingQueue<Object> _queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread _thread;
+    private volatile boolean _closed;
+
+    @Nullable
+    private volatile IOException _failure;
+
+    /**
+     * Create the log, replacing any existing file, and start the thread that writes it.
+     *
+     * @param path       the file to write.
+     * @param threadName the name of the thread that writes the file.
+     * @throws IOException if the file can not be created.
+     */
+    DebugLog(final Path path, final String threadName) throws IOException {
+        _path = path;
+        final Path parent = path.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        _writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        _thread = new Thread(this::drain, threadName);
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    Path getPath() {
+        return _path;
+    }
+
+    /**
+     * Queue the message to be written to the log.
+     * Messages logged after the log has been closed are discarded.
+     *
+     * @param message the message.
+     */
+    void log(final String message) {
+        if (!_closed) {
+            try {
+                _queue.put(message);
+            } catch (final InterruptedException ie) {
+                // Restore the interrupt so the caller can respond to it, discarding the message
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Write the queued messages, close the file and stop the thread that writes it.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    void close() throws IOException {
+        if (!_closed) {
+            _closed = true;
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    _queue.put(CLOSE);
+                    _thread.join();
+                    break;
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final IOException failure = _failure;
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    private void drain() {
+        boolean open = true;
+        while (open) {
+            try {
+                Object entry = _queue.poll();
+                if (null == entry) {
+                    flush();
+                    entry = _queue.take();
+                }
+                if (entry instanceof final String message) {
+                    write(message);
+                } else {
+                    // Only the CLOSE entry is not a message
+                    open = false;
+                }
+            } catch (final InterruptedException ignored) {
+                // The thread only stops once the log is closed so that the messages already queued are written
+            }
+        }
+        try {
+            _writer.close();
+        } catch (final IOException ioe) {
+            fail(ioe);
+        }
+    }
+
+    private void write(final String message) {
+        if (null == _failure) {
+            try {
+                _writer.write(message);
+                _writer.newLine();
+            } catch (final IOException ioe) {
+                fail(ioe);
+            }
+        }
+    }
+
+    private void flush() {
+        if (null == _failure) {
+            try {
+                _writer.flush();
+            } catch (final IOException ioe) {
+                fail(ioe);
+            }
+        }
+    }
+
+    private void fail(final IOException ioe) {
+        if (null == _failure) {
+            _failure = ioe;
+        }
+    }
+
+    /**
+     * Substitute the arguments for the <code>{}</code> placeholders in the pattern, in order.
+     * Placeholders beyond the last argument are left in the message and surplus arguments are ignored.
+     *
+     * @param pattern the message pattern.
+     * @param args    the arguments.
+     * @return the message.
+     */
+    static String format(final String pattern, @Nullable final Object... args) {
+        final StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (@Nullable final Object arg : args) {
+            final int index = pattern.indexOf("{}", start);
+            if (-1 == index) {
+                break;
+            }
+            sb.append(pattern, start, index).append(arg);
+            start = index + 2;
+        }
+        return sb.append(pattern, start, pattern.length()).toString();
+    }
+}
@@ -1,34 +1,83 @@
 package org.realityforge.proton;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import org.jspecify.annotations.Nullable;
 
 /**
  * A collection of TypeElement instances that have been deferred until later processing rounds as their types could not be fully resolved.
+ * Each deferred element may record the names of the unresolved types that caused it to be deferred so that it need
+ * only be revalidated in a round where a type that could match one of those names is introduced.
+ * The elements are retained by their interned qualified names and are resolved back into elements when extracted,
+ * so that the set does not keep the compiler state of earlier rounds reachable.
  */
 public final class DeferredElementSet {
     /**
-     * The list of TypeElement instances deferred since the last call to extractDeferred.
+     * The qualified names of the types deferred since the last call to extractDeferred, mapped to the names of the
+     * unresolved types that caused the deferral. An empty set of names indicates the cause is unknown.
      */
-    private final Set<TypeElement> _deferred = new HashSet<>();
+    private final Map<String, Set<String>> _deferred = new LinkedHashMap<>();
+
+    /**
+     * The element utilities of the processing environment last passed to an extractDeferred method, used to resolve
+     * the deferred types for {@link #getDeferred()}. The utilities live as long as the compilation rather than a round.
+     */
+    @Nullable
+    private Elements _elements;
 
     /**
      * Extract type elements that were deferred in previous rounds and clear deferred list.
+     * Types that no longer exist are omitted.
      *
      * @param processingEnv the processing environment.
      * @return a list of TypeElement instances deferred in previous round.
      */
     public List<TypeElement> extractDeferred(final ProcessingEnvironment processingEnv) {
-        final List<TypeElement> deferred = _deferred.stream()
-                .map(e -> processingEnv.getElementUtils().getTypeElement(e.getQualifiedName()))
-                .toList();
+        _elements = processingEnv.getElementUtils();
+        final List<TypeElement> deferred = new ArrayList<>(_deferred.size());
+        for (final String typeName : _deferred.keySet()) {
+            resolve(processingEnv, typeName, deferred);
+        }
         clear();
         return deferred;
     }
 
+    /**
+     * Extract the type elements that may have become resolvable since they were deferred.
+     * An element is extracted if the cause of its deferral is unknown or if any of the unresolved type names recorded
+     * when it was deferred could refer to one of the newly introduced types. The remaining elements stay deferred.
+     *
+     * @param processingEnv the processing environment.
+     * @param newTypeNames  the qualified names of the types introduced since the elements were deferred.
+     * @return a list of TypeElement instances that should be revalidated.
+     */
+    public List<TypeElement> extractDeferred(
+            final ProcessingEnvironment processingEnv, final Collection<String> newTypeNames) {
+        _elements = processingEnv.getElementUtils();
+        final Set<String> candidateNames = candidateNames(newTypeNames);
+        final List<TypeElement> deferred = new ArrayList<>();
+        final Iterator<Map.Entry<String, Set<String>>> iterator = _deferred.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Set<String>> entry = iterator.next();
+            if (isPotentiallyResolved(entry.getValue(), candidateNames)) {
+                resolve(processingEnv, entry.getKey(), deferred);
+                iterator.remove();
+            }
+        }
+        return deferred;
+    }
+
     /**
      * Clear the set of deferred types.
      * This should be explicitly invoked in the annotation processing when processing rounds have completed.
@@ -38,15 +87,180 @@ public final class DeferredElementSet {
     }
 
     /**
-     * Return the underlying set of deferred types.
+     * Return the qualified names of the deferred types.
+     *
+     * @return an unmodifiable view of the qualified names of the deferred types.
+     */
+    public Set<String> getDeferredTypeNames() {
+        return Collections.unmodifiableSet(_deferred.keySet());
+    }
+
+    /**
+     * Return the deferred types.
+     * The types are resolved from their qualified names through the element utilities of the processing environment
+     * last passed to an <code>extractDeferred</code> method, and types that no longer exist are omitted. The result
+     * is an unmodifiable copy that is not updated as the set changes. The result is empty if no processing
+     * environment has been passed to an <code>extractDeferred</code> method, as the types can not be resolved.
      *
-     * @return the underlying set of deferred types.
+     * @return the deferred types.
+     * @deprecated Use {@link #getDeferredTypeNames()} or {@link #isEmpty()}, which do not resolve the types.
      */
+    @Deprecated
     public Set<TypeElement> getDeferred() {
-        return _deferred;
+        final Elements elements = _elements;
+        if (_deferred.isEmpty() || null == elements) {
+            return Collections.emptySet();
+        }
+        final Set<TypeElement> deferred = new LinkedHashSet<>();
+        for (final String typeName : _deferred.keySet()) {
+            final TypeElement element = elements.getTypeElement(typeName);
+            if (null != element) {
+                deferred.add(element);
+            }
+        }
+        return Collections.unmodifiableSet(deferred);
+    }
+
+    /**
+     * Return true if no types are deferred.
+     *
+     * @return true if no types are deferred.
+     */
+    public boolean isEmpty() {
+        return _deferred.isEmpty();
+    }
+
+    /**
+     * Return the names of the unresolved types that caused the element to be deferred.
+     *
+     * @param element the deferred element.
+     * @return the names of the unresolved types, or an empty set if the element is not deferred or the cause is
+     * unknown.
+     */
+    public Set<String> getUnresolvedTypeNames(final TypeElement element) {
+        final Set<String> unresolvedTypeNames = _deferred.get(element.getQualifiedName().toString());
+        return null == unresolvedTypeNames ? Collections.emptySet() : unresolvedTypeNames;
+    }
+
+    /**
+     * Return the qualified names of the deferred types mapped to the names of the unresolved types they wait on.
+     * The result is a copy that is not updated as the set changes.
+     *
+     * @return the qualified names of the deferred types mapped to the names of the unresolved types they wait on.
+     */
+    public Map<String, Set<String>> getWaitingTypeNames() {
+        return new LinkedHashMap<>(_deferred);
+    }
+
+    /**
+     * Return an estimate of the number of bytes retained by the names in the set.
+     * Names shared with other sets, or with the rest of the compiler, are included in the estimate.
+     *
+     * @return an estimate of the number of bytes retained by the names in the set.
+     */
+    long estimateRetainedBytes() {
+        long bytes = 0;
+        for (final Map.Entry<String, Set<String>> entry : _deferred.entrySet()) {
+            bytes += estimateRetainedBytes(entry.getKey());
+            for (final String unresolvedTypeName : entry.getValue()) {
+                bytes += estimateRetainedBytes(unresolvedTypeName);
+            }
+        }
+        return bytes;
     }
 
+    /**
+     * Return an estimate of the bytes retained by a string of ASCII characters on a 64-bit JVM with compressed
+     * pointers, which is the string object and its backing byte array, each rounded up to 8 bytes.
+     *
+     * @param value the string.
+     * @return the estimated number of bytes.
+     */
+    static long estimateRetainedBytes(final String value) {
+        return 24 + ((16L + value.length() + 7) & ~7L);
+    }
+
+    /**
+     * Defer the element for an unknown reason.
+     * The element will be revalidated in every subsequent round until it is processed.
+     *
+     * @param element the element to defer.
+     */
     public void deferElement(final TypeElement element) {
-        _deferred.add(element);
+        deferElement(element, Collections.emptySet());
+    }
+
+    /**
+     * Defer the element until a type that may match one of the unresolved type names is introduced.
+     * An empty collection of names indicates that the cause is unknown and the element will be revalidated in
+     * every subsequent round.
+     *
+     * @param element             the element to defer.
+     * @param unresolvedTypeNames the names of the unresolved types that caused the element to be deferred.
+     */
+    public void deferElement(final TypeElement element, final Collection<String> unresolvedTypeNames) {
+        final Set<String> names;
+        if (unresolvedTypeNames.isEmpty()) {
+            names = Collections.emptySet();
+        } else {
+            final List<String> internedNames = new ArrayList<>(unresolvedTypeNames.size());
+            for (final String unresolvedTypeName : unresolvedTypeNames) {
+                internedNames.add(unresolvedTypeName.intern());
+            }
+            names = Set.copyOf(internedNames);
+        }
+        _deferred.put(element.getQualifiedName().toString().intern(), names);
+    }
+
+    private static void resolve(
+            final ProcessingEnvironment processingEnv, final String typeName, final List<TypeElement> elements) {
+        final TypeElement element = processingEnv.getElementUtils().getTypeElement(typeName);
+        if (null != element) {
+            elements.add(element);
+        }
+    }
+
+    /**
+     * Return the names that a reference to one of the types could have been written as.
+     * This includes the qualified name and every suffix of the qualified name that starts after a '.' character,
+     * so that simple and partially qualified references are matched.
+     */
+    private static Set<String> candidateNames(final Collection<String> typeNames) {
+        final Set<String> candidateNames = new HashSet<>();
+        for (final String typeName : typeNames) {
+            candidateNames.add(typeName);
+            int index = typeName.indexOf('.');
+            while (-1 != index) {
+                candidateNames.add(typeName.substring(index + 1));
+                index = typeName.indexOf('.', index + 1);
+            }
+        }
+        return candidateNames;
+    }
+
+    /**
+     * Return true if any of the unresolved names may now resolve.
+     * A name may resolve if the name, or any prefix of the name that ends before a '.' character, is a candidate name.
+     * Matching the prefixes means that a reference to a type nested in a newly introduced type is also matched.
+     * The matching is deliberately generous as a false match only costs an additional validation.
+     */
+    private static boolean isPotentiallyResolved(
+            final Set<String> unresolvedTypeNames, final Set<String> candidateNames) {
+        if (unresolvedTypeNames.isEmpty()) {
+            return true;
+        }
+        for (final String unresolvedTypeName : unresolvedTypeNames) {
+            if (candidateNames.contains(unresolvedTypeName)) {
+                return true;
+            }
+            int index = unresolvedTypeName.indexOf('.');
+            while (-1 != index) {
+                if (candidateNames.contains(unresolvedTypeName.substring(0, index))) {
+                    return true;
+                }
+                index = unresolvedTypeName.indexOf('.', index + 1);
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,164 @@
+package org.realityforge.proton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.SimpleTypeVisitor14;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Orders type elements so that a type is processed after the other types in the same batch that it references.
+ * A type references another type if the other type, or a type nested in it, appears in the supertypes of the type or
+ * in the types of the fields and method signatures declared by the type or its nested types. The order is stable so
+ * that unrelated types and types that participate in a cycle retain their original relative order.
+ */
+final class DependencyOrder {
+    private DependencyOrder() {}
+
+    /**
+     * Return the elements ordered so that each element appears after the elements that it references.
+     *
+     * @param elements the elements to order.
+     * @return the ordered elements.
+     */
+    static List<TypeElement> sort(final Collection<TypeElement> elements) {
+        final List<TypeElement> original = new ArrayList<>(elements);
+        final int count = original.size();
+        final Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            indexByName.putIfAbsent(original.get(i).getQualifiedName().toString(), i);
+        }
+
+        // dependents[i] lists the elements that reference element i, and pending[i] counts the
+        // number of distinct elements that element i references and that have not yet been scheduled
+        final List<List<Integer>> dependents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dependents.add(new ArrayList<>());
+        }
+        final int[] pending = new int[count];
+        for (int i = 0; i < count; i++) {
+            for (final int dependency : collectDependencies(original.get(i), indexByName)) {
+                if (dependency != i) {
+                    dependents.get(dependency).add(i);
+                    pending[i]++;
+                }
+            }
+        }
+
+        final PriorityQueue<Integer> ready = new PriorityQueue<>();
+        final TreeSet<Integer> remaining = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            remaining.add(i);
+            if (0 == pending[i]) {
+                ready.add(i);
+            }
+        }
+        final List<TypeElement> ordered = new ArrayList<>(count);
+        while (!remaining.isEmpty()) {
+            // When no element is ready the remaining elements participate in, or depend upon, a cycle
+            // so the cycle is broken by scheduling the earliest remaining element
+            final Integer next = ready.isEmpty() ? remaining.first() : ready.poll();
+            if (remaining.remove(next)) {
+                ordered.add(original.get(next));
+                for (final int dependent : dependents.get(next)) {
+                    if (0 == --pending[dependent]) {
+                        ready.add(dependent);
+                    }
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Return the indexes of the elements in the batch that are referenced by the type.
+     */
+    private static Set<Integer> collectDependencies(final TypeElement type, final Map<String, Integer> indexByName) {
+        final Set<Integer> dependencies = new HashSet<>();
+        final var collector = new ReferencedTypeCollector(indexByName, dependencies);
+        collectDependencies(type, collector);
+        return dependencies;
+    }
+
+    private static void collectDependencies(final TypeElement type, final ReferencedTypeCollector collector) {
+        collector.visit(type.getSuperclass());
+        for (final TypeMirror anInterface : type.getInterfaces()) {
+            collector.visit(anInterface);
+        }
+        for (final Element element : type.getEnclosedElements()) {
+            if (element instanceof final VariableElement field) {
+                collector.visit(field.asType());
+            } else if (element instanceof final ExecutableElement method) {
+                collector.visit(method.getReturnType());
+                for (final VariableElement parameter : method.getParameters()) {
+                    collector.visit(parameter.asType());
+                }
+                for (final TypeMirror thrownType : method.getThrownTypes()) {
+                    collector.visit(thrownType);
+                }
+            } else if (element instanceof final TypeElement nestedType) {
+                collectDependencies(nestedType, collector);
+            }
+        }
+    }
+
+    private static final class ReferencedTypeCollector extends SimpleTypeVisitor14<@Nullable Void, @Nullable Void> {
+        private final Map<String, Integer> _indexByName;
+
+        private final Set<Integer> _dependencies;
+
+        ReferencedTypeCollector(final Map<String, Integer> indexByName, final Set<Integer> dependencies) {
+            _indexByName = indexByName;
+            _dependencies = dependencies;
+        }
+
+        @Override
+        public @Nullable Void visitDeclared(final DeclaredType type, final @Nullable Void p) {
+            Element element = type.asElement();
+            // A reference to a nested type is a reference to the enclosing types that may be in the batch
+            while (element instanceof final TypeElement typeElement) {
+                final Integer index = _indexByName.get(typeElement.getQualifiedName().toString());
+                if (null != index) {
+                    _dependencies.add(index);
+                }
+                element = typeElement.getEnclosingElement();
+            }
+            for (final TypeMirror typeArgument : type.getTypeArguments()) {
+                visit(typeArgument);
+            }
+            return null;
+        }
+
+        @Override
+        public @Nullable Void visitArray(final ArrayType type, final @Nullable Void p) {
+            return visit(type.getComponentType());
+        }
+
+        @Override
+        public @Nullable Void visitWildcard(final WildcardType type, final @Nullable Void p) {
+            final TypeMirror extendsBound = type.getExtendsBound();
+            final TypeMirror superBound = type.getSuperBound();
+            if (null != extendsBound) {
+                visit(extendsBound);
+            }
+            if (null != superBound) {
+                visit(superBound);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.realityforge.proton;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Collects the diagnostics reported by a processor so that they can be deduplicated before they reach the Messager.
+ * A diagnostic is discarded if a diagnostic of the same kind and message has already been reported on the same
+ * element, including in an earlier round. Elements are compared by their description rather than by identity, as the
+ * compiler creates new element instances in each round, and so that the aggregator does not retain the elements of
+ * earlier rounds. At most <code>maxRepeats</code> diagnostics of the same kind and message are
+ * reported, and later repeats are counted and reported as a single summary diagnostic when the diagnostics are flushed.
+ * The diagnostics are held until {@link #flush(Messager)} is invoked, which the processor does once per round.
+ */
+final class DiagnosticAggregator {
+    private record Report(
+            Diagnostic.Kind kind,
+            String message,
+            @Nullable Element element,
+            @Nullable AnnotationMirror annotation,
+            @Nullable AnnotationValue annotationValue) {}
+
+    private record ReportKey(
+            Diagnostic.Kind kind,
+            String message,
+            @Nullable String element,
+            @Nullable String annotation,
+            @Nullable String annotationValue) {}
+
+    private record MessageKey(Diagnostic.Kind kind, String message) {}
+
+    private record Suppression(int count, @Nullable Element element) {}
+
+    private final int _maxRepeats;
+
+    /**
+     * The diagnostics that have been reported, used to discard duplicates.
+     */
+    private final Set<ReportKey> _reported = new HashSet<>();
+
+    /**
+     * The number of distinct diagnostics that have been reported for each kind and message.
+     */
+    private final Map<MessageKey, Integer> _repeatCounts = new HashMap<>();
+
+    /**
+     * The diagnostics to pass to the Messager when next flushed. The elements are retained until the flush.
+     */
+    private final List<Report> _pending = new ArrayList<>();
+
+    /**
+     * The number of diagnostics suppressed since the last flush for each kind and message, and the element of the
+     * first suppressed diagnostic.
+     */
+    private final Map<MessageKey, Suppression> _suppressions = new LinkedHashMap<>();
+
+    private int _suppressedCount;
+
+    DiagnosticAggregator(final int maxRepeats) {
+        _maxRepeats = Math.max(maxRepeats, 1);
+    }
+
+    /**
+     * Collect a diagnostic.
+     *
+     * @return true if the diagnostic will be reported, or false if it was a duplicate or exceeded the repeat limit.
+     */
+    boolean report(
+            final Diagnostic.Kind kind,
+            final CharSequence message,
+            @Nullable final Element element,
+            @Nullable final AnnotationMirror annotation,
+            @Nullable final AnnotationValue annotationValue) {
+        final String text = message.toString();
+        final var reportKey = new ReportKey(
+                kind,
+                text,
+                null == element ? null : ElementsUtil.describe(element),
+                null == annotation ? null : annotation.toString(),
+                null == annotationValue ? null : annotationValue.toString());
+        if (!_reported.add(reportKey)) {
+            return false;
+        } else {
+            final var key = new MessageKey(kind, text);
+            final int repeatCount = _repeatCounts.merge(key, 1, Integer::sum);
+            if (repeatCount > _maxRepeats) {
+                _suppressions.merge(
+                        key, new Suppression(1, element), (a, b) -> new Suppression(a.count() + 1, a.element()));
+                _suppressedCount++;
+                return false;
+            } else {
+                _pending.add(new Report(kind, text, element, annotation, annotationValue));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the number of diagnostics that have exceeded the repeat limit.
+     *
+     * @return the number of suppressed diagnostics.
+     */
+    int getSuppressedCount() {
+        return _suppressedCount;
+    }
+
+    /**
+     * Pass the collected diagnostics to the Messager in the order they were reported, followed by a summary of the
+     * diagnostics that exceeded the repeat limit. Each summary has the kind of the diagnostics that it summarizes and
+     * is reported on the element of the first diagnostic with the same kind and message passed to the Messager in
+     * this flush, or otherwise on the element of the first suppressed diagnostic.
+     *
+     * @param messager the messager.
+     */
+    void flush(final Messager messager) {
+        for (final Report report : _pending) {
+            final AnnotationMirror annotation = report.annotation();
+            final AnnotationValue annotationValue = report.annotationValue();
+            if (null != annotationValue) {
+                messager.printMessage(
+                        report.kind(), report.message(), report.element(), annotation, annotationValue);
+            } else if (null != annotation) {
+                messager.printMessage(report.kind(), report.message(), report.element(), annotation);
+            } else {
+                messager.printMessage(report.kind(), report.message(), report.element());
+            }
+        }
+        for (final Map.Entry<MessageKey, Suppression> entry : _suppressions.entrySet()) {
+            final MessageKey key = entry.getKey();
+            final Suppression suppression = entry.getValue();
+            messager.printMessage(
+                    key.kind(),
+                    "Suppressed " + suppression.count() + " further diagnostics with the message: " + key.message(),
+                    getFirstReportedElement(key, suppression.element()));
+        }
+        _pending.clear();
+        _suppressions.clear();
+    }
+
+    @Nullable
+    private Element getFirstReportedElement(final MessageKey key, @Nullable final Element defaultElement) {
+        for (final Report report : _pending) {
+            if (key.kind() == report.kind() && key.message().equals(report.message()) && null != report.element()) {
+                return report.element();
+            }
+        }
+        return defaultElement;
+    }
+
+    /**
+     * Forget the diagnostics that have been reported so that they are reported again.
+     * Pending diagnostics are retained.
+     */
+    void reset() {
+        _reported.clear();
+        _repeatCounts.clear();
+    }
+}
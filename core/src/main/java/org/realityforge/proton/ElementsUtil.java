@@ -17,6 +17,7 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.QualifiedNameable;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
@@ -269,6 +270,19 @@ public final class ElementsUtil {
         return result;
     }
 
+    /**
+     * Return a stable description of the element that can identify it across rounds.
+     * Types and packages are described by qualified name and other elements are qualified by their enclosing element.
+     */
+    public static String describe(final Element element) {
+        if (element instanceof final QualifiedNameable nameable) {
+            return nameable.getQualifiedName().toString();
+        } else {
+            final Element enclosingElement = element.getEnclosingElement();
+            return null == enclosingElement ? element.toString() : describe(enclosingElement) + "." + element;
+        }
+    }
+
     public static boolean isNonStaticNestedClass(final TypeElement element) {
         return isNonStaticNestedType(element);
     }
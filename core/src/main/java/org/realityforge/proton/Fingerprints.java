@@ -0,0 +1,143 @@
+package org.realityforge.proton;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * Computes a stable digest of the structure of a type that a processor may inspect.
+ * The fingerprint covers the kind, modifiers, annotations and annotation values (including defaults), type parameters
+ * and supertypes of the type, the signatures, throws clauses, modifiers and annotations of its members, its nested
+ * types and the same details of every type in its supertype chain. Method bodies and field initializers, other than
+ * constant values, are excluded so that the fingerprint only changes when the declarations change. The fingerprint
+ * is stable across compilations and JVMs so it can be used to key work cached between builds.
+ *
+ * <p>The digest of each type's own declarations is memoized by the instance, so supertypes that are shared by many
+ * types, such as common base classes and interfaces, are only traversed once. An instance should not be retained
+ * beyond the compilation in which it was created as types may change between compilations.</p>
+ */
+public final class Fingerprints {
+    /**
+     * The number of bytes in a fingerprint.
+     */
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    /**
+     * The digests of the declarations of each type keyed by the qualified name of the type.
+     */
+    private final Map<String, byte[]> _declarationDigests = new HashMap<>();
+
+    /**
+     * Return the fingerprint of the type as a 128-bit hex encoded string.
+     *
+     * @param type the type.
+     * @return the fingerprint.
+     */
+    public String fingerprint(final TypeElement type) {
+        final MessageDigest digest = newDigest();
+        digest.update(declarationDigest(type));
+        for (final TypeElement superType : ElementsUtil.getSuperTypes(type)) {
+            digest.update(declarationDigest(superType));
+        }
+        for (final TypeElement anInterface : ElementsUtil.getInterfaces(type)) {
+            digest.update(declarationDigest(anInterface));
+        }
+        return HexFormat.of().formatHex(Arrays.copyOf(digest.digest(), FINGERPRINT_LENGTH));
+    }
+
+    /**
+     * Return the number of types whose declarations have been digested by the instance.
+     *
+     * @return the number of types whose declarations have been digested.
+     */
+    public int getMemoizedTypeCount() {
+        return _declarationDigests.size();
+    }
+
+    private byte[] declarationDigest(final TypeElement type) {
+        final String typeName = type.getQualifiedName().toString();
+        final byte[] existing = _declarationDigests.get(typeName);
+        if (null != existing) {
+            return existing;
+        } else {
+            final MessageDigest digest = newDigest();
+            describeType(digest, type);
+            final byte[] declarationDigest = digest.digest();
+            _declarationDigests.put(typeName, declarationDigest);
+            return declarationDigest;
+        }
+    }
+
+    private void describeType(final MessageDigest digest, final TypeElement type) {
+        describeDeclaration(digest, type);
+        update(digest, type.getQualifiedName().toString());
+        update(digest, type.getTypeParameters().toString());
+        update(digest, type.getSuperclass().toString());
+        update(digest, type.getInterfaces().toString());
+        for (final Element member : type.getEnclosedElements()) {
+            if (member instanceof final TypeElement nestedType) {
+                digest.update(declarationDigest(nestedType));
+            } else {
+                describeDeclaration(digest, member);
+                update(digest, member.getSimpleName().toString());
+                update(digest, member.asType().toString());
+                if (member instanceof final VariableElement field) {
+                    update(digest, String.valueOf(field.getConstantValue()));
+                } else if (member instanceof final ExecutableElement method) {
+                    describeParameters(digest, method.getParameters());
+                    // The throws clause is not part of the rendering of the method type so it is described explicitly
+                    update(digest, method.getThrownTypes().toString());
+                    update(digest, String.valueOf(method.getDefaultValue()));
+                }
+            }
+        }
+        update(digest, "}");
+    }
+
+    private void describeParameters(final MessageDigest digest, final List<? extends VariableElement> parameters) {
+        for (final VariableElement parameter : parameters) {
+            describeDeclaration(digest, parameter);
+            update(digest, parameter.getSimpleName().toString());
+        }
+    }
+
+    private void describeDeclaration(final MessageDigest digest, final Element element) {
+        update(digest, element.getKind().name());
+        update(digest, element.getModifiers().toString());
+        for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            update(digest, annotation.getAnnotationType().toString());
+            // Defaults are included so that a change to the default of an annotation parameter changes the fingerprint
+            for (final Map.Entry<ExecutableElement, AnnotationValue> entry :
+                    AnnotationsUtil.getAnnotationValuesWithDefaults(annotation).entrySet()) {
+                update(digest, entry.getKey().getSimpleName().toString());
+                update(digest, entry.getValue().toString());
+            }
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        // Separate the values so that adjacent values can not be combined into the same bytes
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.realityforge.proton;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An on-disk cache of formatted source keyed by a hash of the unformatted source and the formatter version.
+ * The cache is bounded by the number of entries and evicts the least recently used entries when the bound is
+ * exceeded. Failures to read or write the cache are treated as cache misses so that a corrupt or unwritable cache
+ * never fails the compilation. The cache may be accessed concurrently from multiple threads and processes.
+ */
+final class FormattedSourceCache {
+    private static final String ENTRY_SUFFIX = ".java";
+
+    private final Path _directory;
+
+    private final int _maxEntries;
+
+    private final String _formatterVersion;
+
+    private final AtomicInteger _hitCount = new AtomicInteger();
+
+    private final AtomicInteger _missCount = new AtomicInteger();
+
+    /**
+     * The number of entries written since the last eviction pass.
+     */
+    private final AtomicInteger _writeCount = new AtomicInteger();
+
+    FormattedSourceCache(final Path directory, final int maxEntries, final String formatterVersion) {
+        _directory = Objects.requireNonNull(directory);
+        _maxEntries = Math.max(1, maxEntries);
+        _formatterVersion = Objects.requireNonNull(formatterVersion);
+    }
+
+    Path getDirectory() {
+        return _directory;
+    }
+
+    int getHitCount() {
+        return _hitCount.get();
+    }
+
+    int getMissCount() {
+        return _missCount.get();
+    }
+
+    /**
+     * Return the formatted source previously stored for the unformatted source, or null if not present.
+     *
+     * @param unformattedSource the unformatted source.
+     * @return the formatted source or null if not present in the cache.
+     */
+    @Nullable
+    String get(final String unformattedSource) {
+        final Path entry = entryPath(unformattedSource);
+        final String formattedSource;
+        try {
+            formattedSource = Files.readString(entry, StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            _missCount.incrementAndGet();
+            return null;
+        }
+        touch(entry);
+        _hitCount.incrementAndGet();
+        return formattedSource;
+    }
+
+    /**
+     * Touch the entry so that eviction removes the least recently used entries first.
+     * A failure to touch the entry, such as when the cache is shared read-only, only affects the eviction order.
+     */
+    private static void touch(final Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException ignored) {
+            // The entry keeps its earlier modification time
+        }
+    }
+
+    /**
+     * Store the formatted source for the unformatted source.
+     *
+     * @param unformattedSource the unformatted source.
+     * @param formattedSource   the formatted source.
+     */
+    void put(final String unformattedSource, final String formattedSource) {
+        final Path entry = entryPath(unformattedSource);
+        try {
+            Files.createDirectories(_directory);
+            final Path tempFile = Files.createTempFile(_directory, "entry", ".tmp");
+            try {
+                Files.writeString(tempFile, formattedSource, StandardCharsets.UTF_8);
+                moveIntoPlace(tempFile, entry);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (final IOException ignored) {
+            // A failure to populate the cache only costs a reformat in a later build
+            return;
+        }
+        if (_writeCount.incrementAndGet() >= _maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the cache contains no more than the maximum number of entries.
+     */
+    synchronized void evict() {
+        _writeCount.set(0);
+        final List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(_directory)) {
+            for (final Path path : paths.filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .toList()) {
+                final FileTime lastModified = lastModifiedTime(path);
+                // The entry may have been removed concurrently by another compilation
+                if (null != lastModified) {
+                    entries.add(new Entry(path, lastModified));
+                }
+            }
+        } catch (final IOException ignored) {
+            return;
+        }
+        final int excess = entries.size() - _maxEntries;
+        if (excess > 0) {
+            entries.sort(Comparator.comparing(Entry::lastModified));
+            for (final Entry entry : entries.subList(0, excess)) {
+                // Another process may be reading the entry in which case it is removed in a later pass
+                deleteIfExists(entry.path());
+            }
+        }
+    }
+
+    String key(final String unformattedSource) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(_formatterVersion.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(unformattedSource.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path entryPath(final String unformattedSource) {
+        return _directory.resolve(key(unformattedSource) + ENTRY_SUFFIX);
+    }
+
+    @Nullable
+    private static FileTime lastModifiedTime(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (final IOException ignored) {
+            return null;
+        }
+    }
+
+    private static boolean deleteIfExists(final Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (final IOException ignored) {
+            return false;
+        }
+    }
+
+    private static void moveIntoPlace(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private record Entry(Path path, FileTime lastModified) {}
+}
@@ -8,18 +8,26 @@ import com.palantir.javapoet.ParameterSpec;
 import com.palantir.javapoet.TypeName;
 import com.palantir.javapoet.TypeSpec;
 import com.palantir.javapoet.TypeVariableName;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
 import javax.annotation.processing.Generated;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.AnnotatedConstruct;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.ModuleElement;
 import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
@@ -28,6 +36,9 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileObject;
+import org.jspecify.annotations.Nullable;
 
 @SuppressWarnings({
     "SameParameterValue",
@@ -43,6 +54,12 @@ public final class GeneratorUtil {
     public static final List<String> ANNOTATION_WHITELIST = Collections.unmodifiableList(Arrays.asList(
             AnnotationsUtil.NONNULL_CLASSNAME, AnnotationsUtil.NULLABLE_CLASSNAME, Deprecated.class.getName()));
 
+    /**
+     * A handle to <code>Elements.getFileObjectOf(Element)</code> or null if the runtime does not provide it.
+     */
+    @Nullable
+    private static final MethodHandle GET_FILE_OBJECT_OF = lookupGetFileObjectOf();
+
     private GeneratorUtil() {}
 
     public static ClassName getGeneratedClassName(
@@ -196,11 +213,136 @@ public final class GeneratorUtil {
         }
     }
 
+    /**
+     * Add the element and all of its superclasses as originating elements.
+     * Prefer {@link #addOriginatingTypes(ProcessingEnvironment, TypeElement, TypeSpec.Builder)} which omits the
+     * types that can not change within the compilation.
+     */
     public static void addOriginatingTypes(final TypeElement element, final TypeSpec.Builder builder) {
         builder.addOriginatingElement(element);
         ElementsUtil.getSuperTypes(element).forEach(builder::addOriginatingElement);
     }
 
+    /**
+     * Add the types returned by {@link #getOriginatingTypes(ProcessingEnvironment, TypeElement)} as originating
+     * elements.
+     */
+    public static void addOriginatingTypes(
+            final ProcessingEnvironment processingEnv, final TypeElement element, final TypeSpec.Builder builder) {
+        getOriginatingTypes(processingEnv, element).forEach(builder::addOriginatingElement);
+    }
+
+    /**
+     * Add the types returned by {@link #getOriginatingTypes(ProcessingEnvironment, TypeElement, Predicate)} as
+     * originating elements.
+     */
+    public static void addOriginatingTypes(
+            final ProcessingEnvironment processingEnv,
+            final TypeElement element,
+            final TypeSpec.Builder builder,
+            final Predicate<TypeElement> influencedGeneration) {
+        getOriginatingTypes(processingEnv, element, influencedGeneration).forEach(builder::addOriginatingElement);
+    }
+
+    /**
+     * Return the minimal originating types for a type generated from the element.
+     * This is the element followed by each distinct superclass and interface of the element that may change within
+     * the compilation. Types that are only available as class files, such as JDK and library types, are omitted as a
+     * change to them always triggers a full rebuild and listing them only enlarges the dependency graphs of
+     * incremental builds.
+     *
+     * @param processingEnv the processing environment.
+     * @param element       the element that the type is generated from.
+     * @return the originating types.
+     */
+    public static List<TypeElement> getOriginatingTypes(
+            final ProcessingEnvironment processingEnv, final TypeElement element) {
+        return getOriginatingTypes(processingEnv, element, t -> true);
+    }
+
+    /**
+     * Return the minimal originating types for a type generated from the element.
+     * This is the element followed by each distinct superclass and interface of the element that may change within
+     * the compilation and that influenced generation as determined by the predicate. Processors should supply a
+     * predicate that only accepts the supertypes whose declarations were read while generating the type.
+     *
+     * @param processingEnv        the processing environment.
+     * @param element              the element that the type is generated from.
+     * @param influencedGeneration the predicate that returns true if the supertype influenced generation.
+     * @return the originating types.
+     */
+    public static List<TypeElement> getOriginatingTypes(
+            final ProcessingEnvironment processingEnv,
+            final TypeElement element,
+            final Predicate<TypeElement> influencedGeneration) {
+        final Set<TypeElement> types = new LinkedHashSet<>();
+        types.add(element);
+        for (final TypeElement superType : ElementsUtil.getSuperTypes(element)) {
+            if (isOriginatingSuperType(processingEnv, superType, influencedGeneration)) {
+                types.add(superType);
+            }
+        }
+        for (final TypeElement anInterface : ElementsUtil.getInterfaces(element)) {
+            // Interfaces reached through several supertypes are only tested and added once
+            if (!types.contains(anInterface)
+                    && isOriginatingSuperType(processingEnv, anInterface, influencedGeneration)) {
+                types.add(anInterface);
+            }
+        }
+        return new ArrayList<>(types);
+    }
+
+    private static boolean isOriginatingSuperType(
+            final ProcessingEnvironment processingEnv,
+            final TypeElement type,
+            final Predicate<TypeElement> influencedGeneration) {
+        return !isBinaryOnly(processingEnv, type) && influencedGeneration.test(type);
+    }
+
+    /**
+     * Return true if the type is only available as a class file and thus can not change within the compilation.
+     * Types in the JDK modules are always binary. Other types are checked using the file object of the type when the
+     * compiler exposes it, and are otherwise assumed to be able to change.
+     */
+    private static boolean isBinaryOnly(final ProcessingEnvironment processingEnv, final TypeElement type) {
+        final ModuleElement module = processingEnv.getElementUtils().getModuleOf(type);
+        if (null != module && !module.isUnnamed()) {
+            final String moduleName = module.getQualifiedName().toString();
+            if (moduleName.startsWith("java.") || moduleName.startsWith("jdk.")) {
+                return true;
+            }
+        }
+        if (null != GET_FILE_OBJECT_OF) {
+            final Elements elements = processingEnv.getElementUtils();
+            try {
+                final var fileObject = (JavaFileObject) GET_FILE_OBJECT_OF.invoke(elements, type);
+                return null != fileObject && JavaFileObject.Kind.CLASS == fileObject.getKind();
+            } catch (final Error e) {
+                throw e;
+            } catch (final Throwable ignored) {
+                // The compiler can not report where the type was loaded from so assume that it may change
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a handle to <code>Elements.getFileObjectOf(Element)</code>, which is only present in Java 18 and later,
+     * or null when running on an earlier version.
+     */
+    @Nullable
+    private static MethodHandle lookupGetFileObjectOf() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(
+                            Elements.class,
+                            "getFileObjectOf",
+                            MethodType.methodType(JavaFileObject.class, Element.class));
+        } catch (final NoSuchMethodException | IllegalAccessException ignored) {
+            return null;
+        }
+    }
+
     public static void addGeneratedAnnotation(
             final ProcessingEnvironment processingEnv, final TypeSpec.Builder builder, final String classname) {
         builder.addAnnotation(AnnotationSpec.builder(ClassName.get(Generated.class))
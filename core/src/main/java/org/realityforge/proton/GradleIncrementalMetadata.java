@@ -0,0 +1,55 @@
+package org.realityforge.proton;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Generates the metadata that registers processors with Gradle as incremental annotation processors.
+ * The metadata must be included in the processor jar at {@link #PATH}. Each processor is registered as a
+ * <code>dynamic</code> processor so that Gradle uses the {@link IncrementalCategory} that the processor reports
+ * at runtime via {@link AbstractStandardProcessor#getIncrementalCategory()}.
+ */
+public final class GradleIncrementalMetadata {
+    /**
+     * The path of the metadata within the processor jar.
+     */
+    public static final String PATH = "META-INF/gradle/incremental.annotation.processors";
+
+    private GradleIncrementalMetadata() {}
+
+    /**
+     * Return the content of the metadata that registers the processors as dynamic incremental processors.
+     * The processors are sorted so that the content is stable.
+     *
+     * @param processorClassNames the fully qualified names of the processor classes.
+     * @return the content of the metadata.
+     */
+    public static String render(final Collection<String> processorClassNames) {
+        final var sb = new StringBuilder();
+        for (final String processorClassName : new TreeSet<>(processorClassNames)) {
+            sb.append(processorClassName).append(",dynamic\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the metadata that registers the processors as dynamic incremental processors.
+     *
+     * @param outputDirectory     the directory that holds the content of the processor jar.
+     * @param processorClassNames the fully qualified names of the processor classes.
+     * @return the file that was written.
+     * @throws IOException if the metadata can not be written.
+     */
+    public static Path write(final Path outputDirectory, final Collection<String> processorClassNames)
+            throws IOException {
+        final Path file = outputDirectory.resolve(PATH);
+        Files.createDirectories(Objects.requireNonNull(file.getParent()));
+        Files.writeString(file, render(processorClassNames), StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,84 @@
+package org.realityforge.proton;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Measures the memory allocated by threads and retained on the heap, for use when profiling.
+ * Allocations are measured via the HotSpot specific <code>com.sun.management.ThreadMXBean</code>, which may be
+ * absent or disabled in other JVMs, in which case allocations are reported as unsupported.
+ */
+final class HeapAccounting {
+    /**
+     * The bean used to measure allocations or null if the JVM does not support measuring allocations.
+     */
+    private static final com.sun.management.@Nullable ThreadMXBean THREAD_MX_BEAN = lookupThreadMXBean();
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> MemoryType.HEAP == pool.getType())
+            .toList();
+
+    private HeapAccounting() {}
+
+    /**
+     * Return true if the JVM supports measuring the bytes allocated by a thread.
+     *
+     * @return true if the JVM supports measuring the bytes allocated by a thread.
+     */
+    static boolean isAllocationAccountingSupported() {
+        return null != THREAD_MX_BEAN;
+    }
+
+    /**
+     * Return the total bytes allocated by the current thread or -1 if this is not supported by the JVM.
+     * The value only increases, so the bytes allocated by a section of code are the difference between the values
+     * before and after the section.
+     *
+     * @return the total bytes allocated by the current thread.
+     */
+    static long getCurrentThreadAllocatedBytes() {
+        final com.sun.management.@Nullable ThreadMXBean bean = THREAD_MX_BEAN;
+        return null != bean ? bean.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Return the bytes retained on the heap.
+     * This is the heap in use after the most recent garbage collection, which excludes the garbage that has yet to
+     * be collected. The heap currently in use is returned if the JVM does not report the usage after collection or no
+     * collection has occurred.
+     *
+     * @return the bytes retained on the heap.
+     */
+    static long getRetainedHeapBytes() {
+        long retained = 0;
+        boolean collected = false;
+        for (final MemoryPoolMXBean pool : HEAP_POOLS) {
+            // The usage after collection is null if the pool does not support it
+            final MemoryUsage usage = pool.getCollectionUsage();
+            if (null != usage) {
+                retained += usage.getUsed();
+                collected = collected || 0 != usage.getUsed();
+            }
+        }
+        return collected ? retained : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static com.sun.management.@Nullable ThreadMXBean lookupThreadMXBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return bean;
+            }
+        } catch (final LinkageError | SecurityException | UnsupportedOperationException ignored) {
+            // The jdk.management module is absent or allocation accounting can not be enabled
+        }
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package org.realityforge.proton;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The category of incremental annotation processing supported by a processor.
+ * Gradle uses the category to recompile only the sources affected by a change rather than every source when a
+ * processor is present. A processor reports its category via {@link AbstractStandardProcessor#getIncrementalCategory()}
+ * and must be registered as a <code>dynamic</code> processor in the
+ * <code>META-INF/gradle/incremental.annotation.processors</code> file of the processor jar, as generated by
+ * {@link GradleIncrementalMetadata}.
+ */
+public enum IncrementalCategory {
+    /**
+     * The processor does not support incremental processing.
+     */
+    NONE(null),
+    /**
+     * Each generated type is derived from a single annotated type, the types nested in it and the types that it
+     * references. Every generated type must originate from exactly one top-level type.
+     */
+    ISOLATING("isolating"),
+    /**
+     * Generated types may be derived from many annotated types, such as a registry of the annotated types.
+     */
+    AGGREGATING("aggregating");
+
+    @Nullable
+    private final String _gradleName;
+
+    IncrementalCategory(@Nullable final String gradleName) {
+        _gradleName = gradleName;
+    }
+
+    /**
+     * Return the option a dynamic processor reports to Gradle to declare the category, or null if the processor is
+     * not incremental.
+     *
+     * @return the option that declares the category to Gradle.
+     */
+    @Nullable
+    public String getGradleOption() {
+        return null == _gradleName ? null : "org.gradle.annotation.processing." + _gradleName;
+    }
+}
@@ -2,6 +2,7 @@ package org.realityforge.proton;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -20,6 +21,19 @@ public final class JsonUtil {
             final String filename,
             final Consumer<JsonGenerator> action)
             throws IOException {
+        if (ResourceUtil.areWritesSuppressed()) {
+            return;
+        }
+        ResourceUtil.writeResource(processingEnv, filename, renderJson(action), element);
+    }
+
+    /**
+     * Render the json written by the action into a formatted string.
+     *
+     * @param action the action that writes the json.
+     * @return the formatted json.
+     */
+    public static String renderJson(final Consumer<JsonGenerator> action) {
         final Map<String, Object> properties = new HashMap<>();
         properties.put(JsonGenerator.PRETTY_PRINTING, true);
         final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(properties);
@@ -29,7 +43,7 @@ public final class JsonUtil {
         action.accept(g);
         g.close();
 
-        ResourceUtil.writeResource(processingEnv, filename, formatJson(baos.toString()), element);
+        return formatJson(baos.toString(StandardCharsets.UTF_8));
     }
 
     /**
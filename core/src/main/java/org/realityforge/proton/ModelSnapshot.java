@@ -0,0 +1,318 @@
+package org.realityforge.proton;
+
+import com.palantir.javapoet.ClassName;
+import com.palantir.javapoet.TypeName;
+import com.palantir.javapoet.TypeVariableName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.SimpleAnnotationValueVisitor14;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Extracts immutable descriptors of a type from the javax.lang.model API.
+ * The javax.lang.model API must only be used from the compiler thread, so a snapshot is taken of the parts of a type
+ * that generators typically read. The snapshot holds no references to elements or type mirrors and can be read from
+ * any thread, which allows the code for many types to be generated in parallel.
+ *
+ * <p>A snapshot describes the declared members of the type and of its nested types. Inherited members are not
+ * included, although the supertypes of the type are described.</p>
+ */
+public final class ModelSnapshot {
+    private ModelSnapshot() {}
+
+    /**
+     * An immutable description of a type.
+     *
+     * @param className     the name of the type.
+     * @param kind          the kind of the type.
+     * @param modifiers     the modifiers of the type, in the order of the {@link Modifier} enum.
+     * @param typeVariables the type parameters of the type.
+     * @param superclass    the superclass of the type or null if the type is an interface or {@link Object}.
+     * @param interfaces    the interfaces directly implemented or extended by the type.
+     * @param annotations   the annotations present on the type.
+     * @param fields        the fields and enum constants declared by the type.
+     * @param methods       the methods and constructors declared by the type.
+     * @param nestedTypes   the types declared in the type.
+     */
+    public record TypeSnapshot(
+            ClassName className,
+            ElementKind kind,
+            Set<Modifier> modifiers,
+            List<TypeVariableName> typeVariables,
+            @Nullable TypeName superclass,
+            List<TypeName> interfaces,
+            List<AnnotationSnapshot> annotations,
+            List<FieldSnapshot> fields,
+            List<MethodSnapshot> methods,
+            List<TypeSnapshot> nestedTypes) {
+        /**
+         * Return the annotation with the specified classname or null if the type is not annotated with it.
+         *
+         * @param annotationClassname the fully qualified name of the annotation type.
+         * @return the annotation or null if not present.
+         */
+        @Nullable
+        public AnnotationSnapshot findAnnotation(final String annotationClassname) {
+            return ModelSnapshot.findAnnotation(annotations, annotationClassname);
+        }
+    }
+
+    /**
+     * An immutable description of a field or enum constant.
+     *
+     * @param name          the name of the field.
+     * @param kind          the kind of the field.
+     * @param type          the type of the field.
+     * @param modifiers     the modifiers of the field.
+     * @param annotations   the annotations present on the field.
+     * @param constantValue the value of the field if it is a compile-time constant, otherwise null.
+     */
+    public record FieldSnapshot(
+            String name,
+            ElementKind kind,
+            TypeName type,
+            Set<Modifier> modifiers,
+            List<AnnotationSnapshot> annotations,
+            @Nullable Object constantValue) {
+        @Nullable
+        public AnnotationSnapshot findAnnotation(final String annotationClassname) {
+            return ModelSnapshot.findAnnotation(annotations, annotationClassname);
+        }
+    }
+
+    /**
+     * An immutable description of a method or constructor.
+     *
+     * @param name          the name of the method, or <code>&lt;init&gt;</code> for a constructor.
+     * @param kind          the kind of the method.
+     * @param modifiers     the modifiers of the method.
+     * @param typeVariables the type parameters of the method.
+     * @param returnType    the return type of the method.
+     * @param parameters    the parameters of the method.
+     * @param thrownTypes   the types declared in the throws clause of the method.
+     * @param varArgs       true if the last parameter is a variable arity parameter.
+     * @param annotations   the annotations present on the method.
+     */
+    public record MethodSnapshot(
+            String name,
+            ElementKind kind,
+            Set<Modifier> modifiers,
+            List<TypeVariableName> typeVariables,
+            TypeName returnType,
+            List<ParameterSnapshot> parameters,
+            List<TypeName> thrownTypes,
+            boolean varArgs,
+            List<AnnotationSnapshot> annotations) {
+        @Nullable
+        public AnnotationSnapshot findAnnotation(final String annotationClassname) {
+            return ModelSnapshot.findAnnotation(annotations, annotationClassname);
+        }
+    }
+
+    /**
+     * An immutable description of a method parameter.
+     *
+     * @param name        the name of the parameter.
+     * @param type        the type of the parameter.
+     * @param annotations the annotations present on the parameter.
+     */
+    public record ParameterSnapshot(String name, TypeName type, List<AnnotationSnapshot> annotations) {
+        @Nullable
+        public AnnotationSnapshot findAnnotation(final String annotationClassname) {
+            return ModelSnapshot.findAnnotation(annotations, annotationClassname);
+        }
+    }
+
+    /**
+     * An immutable description of an annotation.
+     * The values include the defaults of parameters that were not specified. Each value is converted to an immutable
+     * form: primitives and strings are boxed or retained, class literals are {@link TypeName}s, enum constants are
+     * the names of the constants, nested annotations are {@link AnnotationSnapshot}s and arrays are lists.
+     *
+     * @param type   the annotation type.
+     * @param values the values of the annotation parameters keyed by parameter name, in declaration order.
+     */
+    public record AnnotationSnapshot(ClassName type, Map<String, Object> values) {
+        /**
+         * Return the value of the annotation parameter.
+         *
+         * @param name the name of the parameter.
+         * @return the value of the parameter.
+         * @throws IllegalArgumentException if the annotation has no such parameter.
+         */
+        public Object getValue(final String name) {
+            final Object value = values.get(name);
+            if (null == value) {
+                throw new IllegalArgumentException("Annotation " + type + " has no parameter named " + name);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Return an immutable description of the type and its nested types.
+     * This must be invoked on the compiler thread.
+     *
+     * @param type the type.
+     * @return the description of the type.
+     */
+    public static TypeSnapshot of(final TypeElement type) {
+        final List<FieldSnapshot> fields = new ArrayList<>();
+        final List<MethodSnapshot> methods = new ArrayList<>();
+        final List<TypeSnapshot> nestedTypes = new ArrayList<>();
+        for (final Element member : type.getEnclosedElements()) {
+            if (member instanceof final TypeElement nestedType) {
+                nestedTypes.add(of(nestedType));
+            } else if (member instanceof final VariableElement field) {
+                fields.add(new FieldSnapshot(
+                        field.getSimpleName().toString(),
+                        field.getKind(),
+                        TypeName.get(field.asType()),
+                        modifiers(field.getModifiers()),
+                        annotations(field),
+                        field.getConstantValue()));
+            } else if (member instanceof final ExecutableElement method) {
+                methods.add(methodSnapshot(method));
+            }
+        }
+        final TypeMirror superclass = type.getSuperclass();
+        return new TypeSnapshot(
+                ClassName.get(type),
+                type.getKind(),
+                modifiers(type.getModifiers()),
+                typeVariables(type.getTypeParameters()),
+                TypeKind.NONE == superclass.getKind() ? null : TypeName.get(superclass),
+                typeNames(type.getInterfaces()),
+                annotations(type),
+                List.copyOf(fields),
+                List.copyOf(methods),
+                List.copyOf(nestedTypes));
+    }
+
+    private static MethodSnapshot methodSnapshot(final ExecutableElement method) {
+        final List<ParameterSnapshot> parameters = new ArrayList<>();
+        for (final VariableElement parameter : method.getParameters()) {
+            parameters.add(new ParameterSnapshot(
+                    parameter.getSimpleName().toString(), TypeName.get(parameter.asType()), annotations(parameter)));
+        }
+        return new MethodSnapshot(
+                method.getSimpleName().toString(),
+                method.getKind(),
+                modifiers(method.getModifiers()),
+                typeVariables(method.getTypeParameters()),
+                TypeName.get(method.getReturnType()),
+                List.copyOf(parameters),
+                typeNames(method.getThrownTypes()),
+                method.isVarArgs(),
+                annotations(method));
+    }
+
+    private static Set<Modifier> modifiers(final Set<Modifier> modifiers) {
+        final Set<Modifier> copy = EnumSet.noneOf(Modifier.class);
+        copy.addAll(modifiers);
+        // The EnumSet is retained so that modifiers are iterated in a stable order
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static List<TypeVariableName> typeVariables(final List<? extends TypeParameterElement> typeParameters) {
+        final List<TypeVariableName> typeVariables = new ArrayList<>(typeParameters.size());
+        for (final TypeParameterElement typeParameter : typeParameters) {
+            typeVariables.add(TypeVariableName.get(typeParameter));
+        }
+        return List.copyOf(typeVariables);
+    }
+
+    private static List<TypeName> typeNames(final Collection<? extends TypeMirror> types) {
+        final List<TypeName> typeNames = new ArrayList<>(types.size());
+        for (final TypeMirror type : types) {
+            typeNames.add(TypeName.get(type));
+        }
+        return List.copyOf(typeNames);
+    }
+
+    private static List<AnnotationSnapshot> annotations(final Element element) {
+        final List<AnnotationSnapshot> annotations = new ArrayList<>();
+        for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            annotations.add(annotationSnapshot(annotation));
+        }
+        return List.copyOf(annotations);
+    }
+
+    private static AnnotationSnapshot annotationSnapshot(final AnnotationMirror annotation) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (final Map.Entry<ExecutableElement, AnnotationValue> entry :
+                AnnotationsUtil.getAnnotationValuesWithDefaults(annotation).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), annotationValue(entry.getValue()));
+        }
+        return new AnnotationSnapshot(
+                ClassName.get((TypeElement) annotation.getAnnotationType().asElement()),
+                Collections.unmodifiableMap(values));
+    }
+
+    private static Object annotationValue(final AnnotationValue value) {
+        return AnnotationValueConverter.INSTANCE.visit(value);
+    }
+
+    @Nullable
+    private static AnnotationSnapshot findAnnotation(
+            final List<AnnotationSnapshot> annotations, final String annotationClassname) {
+        for (final AnnotationSnapshot annotation : annotations) {
+            if (annotation.type().canonicalName().equals(annotationClassname)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private static final class AnnotationValueConverter
+            extends SimpleAnnotationValueVisitor14<Object, @Nullable Void> {
+        static final AnnotationValueConverter INSTANCE = new AnnotationValueConverter();
+
+        @Override
+        protected Object defaultAction(final Object value, final @Nullable Void p) {
+            // Primitives and strings are already immutable
+            return value;
+        }
+
+        @Override
+        public Object visitType(final TypeMirror type, final @Nullable Void p) {
+            return TypeName.get(type);
+        }
+
+        @Override
+        public Object visitEnumConstant(final VariableElement constant, final @Nullable Void p) {
+            return constant.getSimpleName().toString();
+        }
+
+        @Override
+        public Object visitAnnotation(final AnnotationMirror annotation, final @Nullable Void p) {
+            return annotationSnapshot(annotation);
+        }
+
+        @Override
+        public Object visitArray(final List<? extends AnnotationValue> values, final @Nullable Void p) {
+            final List<Object> converted = new ArrayList<>(values.size());
+            for (final AnnotationValue value : values) {
+                converted.add(visit(value));
+            }
+            return List.copyOf(converted);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.realityforge.proton;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An on-disk cache of the types generated by processor actions.
+ * Each entry is keyed by the action and the element that it processed, and records the fingerprint of the inputs to
+ * the action along with the source and originating types of every type that the action generated. An entry is only
+ * returned when the fingerprint is unchanged. The cache is bounded by the number of entries and evicts the least
+ * recently used entries when the bound is exceeded. Failures to read or write the cache are treated as cache misses so
+ * that a corrupt or unwritable cache never fails the compilation. Strings are written as their length followed by their
+ * UTF-8 bytes, and every length and count read from an entry is checked against the size of the entry, so that a
+ * corrupt entry can not cause an unbounded allocation.
+ */
+final class OutputCache {
+    /**
+     * The version of the entry format. Entries with a different version are ignored.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private final Path _directory;
+
+    private final int _maxEntries;
+
+    private final AtomicInteger _hitCount = new AtomicInteger();
+
+    private final AtomicInteger _missCount = new AtomicInteger();
+
+    /**
+     * The number of entries written since the last eviction pass.
+     */
+    private final AtomicInteger _writeCount = new AtomicInteger();
+
+    /**
+     * A type generated by an action.
+     *
+     * @param typeName             the qualified name of the generated type.
+     * @param originatingTypeNames the qualified names of the originating types of the generated type.
+     * @param source               the source of the generated type.
+     */
+    record CachedType(String typeName, List<String> originatingTypeNames, String source) {}
+
+    OutputCache(final Path directory, final int maxEntries) {
+        _directory = Objects.requireNonNull(directory);
+        _maxEntries = Math.max(1, maxEntries);
+    }
+
+    Path getDirectory() {
+        return _directory;
+    }
+
+    int getHitCount() {
+        return _hitCount.get();
+    }
+
+    int getMissCount() {
+        return _missCount.get();
+    }
+
+    /**
+     * Return the types stored for the entry, or null if the entry is absent or was stored with another fingerprint.
+     *
+     * @param entryName   the name identifying the action and the element that it processed.
+     * @param fingerprint the fingerprint of the inputs to the action.
+     * @return the generated types or null if not present in the cache.
+     */
+    @Nullable
+    List<CachedType> get(final String entryName, final String fingerprint) {
+        final Path entry = entryPath(entryName);
+        final List<CachedType> types = read(entry, fingerprint);
+        if (null == types) {
+            _missCount.incrementAndGet();
+        } else {
+            touch(entry);
+            _hitCount.incrementAndGet();
+        }
+        return types;
+    }
+
+    @Nullable
+    private static List<CachedType> read(final Path entry, final String fingerprint) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            final long size = Files.size(entry);
+            if (FORMAT_VERSION == input.readInt() && fingerprint.equals(readString(input, size))) {
+                final int typeCount = readLength(input, size);
+                final List<CachedType> types = new ArrayList<>();
+                for (int i = 0; i < typeCount; i++) {
+                    final String typeName = readString(input, size);
+                    final int originatingTypeCount = readLength(input, size);
+                    final List<String> originatingTypeNames = new ArrayList<>();
+                    for (int j = 0; j < originatingTypeCount; j++) {
+                        originatingTypeNames.add(readString(input, size));
+                    }
+                    types.add(new CachedType(typeName, originatingTypeNames, readString(input, size)));
+                }
+                return types;
+            }
+        } catch (final IOException | RuntimeException ignored) {
+            // A missing, truncated or corrupt entry is a miss and is replaced when the action completes
+        }
+        return null;
+    }
+
+    private static String readString(final DataInputStream input, final long size) throws IOException {
+        final byte[] bytes = new byte[readLength(input, size)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a length or count, which can not exceed the size of the entry that it is read from.
+     */
+    private static int readLength(final DataInputStream input, final long size) throws IOException {
+        final int length = input.readInt();
+        if (length < 0 || length > size) {
+            throw new IOException("Corrupt output cache entry");
+        }
+        return length;
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Touch the entry so that eviction removes the least recently used entries first.
+     * A failure to touch the entry, such as when the cache is shared read-only, only affects the eviction order.
+     */
+    private static void touch(final Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException ignored) {
+            // The entry keeps its earlier modification time
+        }
+    }
+
+    /**
+     * Store the types generated for the entry, replacing any existing entry.
+     *
+     * @param entryName   the name identifying the action and the element that it processed.
+     * @param fingerprint the fingerprint of the inputs to the action.
+     * @param types       the generated types.
+     */
+    void put(final String entryName, final String fingerprint, final List<CachedType> types) {
+        try {
+            Files.createDirectories(_directory);
+            final Path tempFile = Files.createTempFile(_directory, "entry", ".tmp");
+            try {
+                try (DataOutputStream output =
+                        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    output.writeInt(FORMAT_VERSION);
+                    writeString(output, fingerprint);
+                    output.writeInt(types.size());
+                    for (final CachedType type : types) {
+                        writeString(output, type.typeName());
+                        output.writeInt(type.originatingTypeNames().size());
+                        for (final String originatingTypeName : type.originatingTypeNames()) {
+                            writeString(output, originatingTypeName);
+                        }
+                        writeString(output, type.source());
+                    }
+                }
+                moveIntoPlace(tempFile, entryPath(entryName));
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (final IOException ignored) {
+            // A failure to populate the cache only costs running the action in a later build
+            return;
+        }
+        if (_writeCount.incrementAndGet() >= _maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove the least recently used entries until the cache contains no more than the maximum number of entries.
+     */
+    synchronized void evict() {
+        _writeCount.set(0);
+        final List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(_directory)) {
+            for (final Path path : paths.filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .toList()) {
+                final FileTime lastModified = lastModifiedTime(path);
+                // The entry may have been removed concurrently by another compilation
+                if (null != lastModified) {
+                    entries.add(new Entry(path, lastModified));
+                }
+            }
+        } catch (final IOException ignored) {
+            return;
+        }
+        final int excess = entries.size() - _maxEntries;
+        if (excess > 0) {
+            entries.sort(Comparator.comparing(Entry::lastModified));
+            for (final Entry entry : entries.subList(0, excess)) {
+                // Another process may be reading the entry in which case it is removed in a later pass
+                deleteIfExists(entry.path());
+            }
+        }
+    }
+
+    String key(final String entryName) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(entryName.getBytes(StandardCharsets.UTF_8)));
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path entryPath(final String entryName) {
+        return _directory.resolve(key(entryName) + ENTRY_SUFFIX);
+    }
+
+    @Nullable
+    private static FileTime lastModifiedTime(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (final IOException ignored) {
+            return null;
+        }
+    }
+
+    private static boolean deleteIfExists(final Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (final IOException ignored) {
+            return false;
+        }
+    }
+
+    private static void moveIntoPlace(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private record Entry(Path path, FileTime lastModified) {}
+}
@@ -0,0 +1,142 @@
+package org.realityforge.proton;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The Java Flight Recorder events emitted by {@link AbstractStandardProcessor}.
+ * The events make the work performed by a processor visible in a recording alongside the GC, JIT and thread activity
+ * of the compiler. Events are created and timed via the standard <code>begin()</code>, <code>end()</code> and
+ * <code>shouldCommit()</code> idiom and the fields are only computed once <code>shouldCommit()</code> returns true,
+ * so the events cost nothing beyond the allocation that the JIT eliminates when recording is disabled.
+ */
+final class ProcessorEvents {
+    private ProcessorEvents() {}
+
+    @Name("org.realityforge.proton.Round")
+    @Label("Processor Round")
+    @Description("A round of annotation processing, from collectRootTypeNames(...) to "
+            + "clearRootTypeNamesIfProcessingOver(...)")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class RoundEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Root Element Count")
+        int rootElementCount;
+
+        @Label("Processing Over")
+        boolean processingOver;
+    }
+
+    @Name("org.realityforge.proton.Action")
+    @Label("Processor Action")
+    @Description("An action performed on an element, including the replay of cached output")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class ActionEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Element")
+        @Nullable
+        String element;
+
+        @Label("Action")
+        @Nullable
+        String action;
+
+        @Label("Cached")
+        @Description("True if the output of the action was replayed from the output cache")
+        boolean cached;
+    }
+
+    @Name("org.realityforge.proton.Validation")
+    @Label("Element Validation")
+    @Description("The superficial validation of an element before it is processed")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class ValidationEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Element")
+        @Nullable
+        String element;
+
+        @Label("Valid")
+        boolean valid;
+    }
+
+    @Name("org.realityforge.proton.Deferral")
+    @Label("Element Deferral")
+    @Description("An element deferred for processing in a later round")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class DeferralEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Element")
+        @Nullable
+        String element;
+
+        @Label("Unresolved Types")
+        @Nullable
+        String unresolvedTypes;
+    }
+
+    @Name("org.realityforge.proton.Format")
+    @Label("Source Formatting")
+    @Description("The rendering and formatting of a generated type")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class FormatEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Type")
+        @Nullable
+        String type;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+    }
+
+    @Name("org.realityforge.proton.FilerWrite")
+    @Label("Filer Write")
+    @Description("The write of a generated type through the Filer")
+    @Category({"Proton", "Annotation Processing"})
+    @StackTrace(false)
+    static final class FilerWriteEvent extends Event {
+        @Label("Processor")
+        @Nullable
+        String processor;
+
+        @Label("Element")
+        @Description("The element whose action generated the type, if known")
+        @Nullable
+        String element;
+
+        @Label("Type")
+        @Nullable
+        String type;
+
+        @Label("Size")
+        @DataAmount
+        @Description("The size of the source in UTF-8 bytes, or -1 if the source was streamed")
+        long size;
+    }
+}
@@ -6,7 +6,19 @@ import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import org.jspecify.annotations.Nullable;
 
+/**
+ * An exception thrown when an element fails validation, reported as an error on the element by the processor.
+ * The exception is used to signal an expected failure rather than a bug, so by default it does not capture a stack
+ * trace, as capturing the stack dominates the cost of processors that reject many elements. Setting the
+ * <code>proton.processor_exception.stack_traces</code> system property to <code>true</code> captures the stack trace
+ * when debugging where the exception is thrown.
+ */
 public final class ProcessorException extends RuntimeException {
+    /**
+     * True if the exception captures the stack trace when created.
+     */
+    private static final boolean CAPTURE_STACK_TRACE = Boolean.getBoolean("proton.processor_exception.stack_traces");
+
     private final Element _element;
 
     @Nullable
@@ -29,7 +41,7 @@ public final class ProcessorException extends RuntimeException {
             final Element element,
             @Nullable final AnnotationMirror annotation,
             @Nullable final AnnotationValue annotationValue) {
-        super(message);
+        super(message, null, false, CAPTURE_STACK_TRACE);
         assert null == annotationValue || null != annotation;
         _element = Objects.requireNonNull(element);
         _annotation = annotation;
@@ -0,0 +1,322 @@
+package org.realityforge.proton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.processing.RoundEnvironment;
+import javax.json.stream.JsonGenerator;
+import javax.lang.model.element.Element;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Records the time spent processing each element and each round when profiling is enabled.
+ * Durations are recorded in nanoseconds for the validation of elements, the extraction of deferred elements, the
+ * actions applied to elements and the emission of generated types. The time of an action includes the emission of
+ * types that are written while the action runs, so that emission is excluded from the total time of the element.
+ * The report is written as JSON so it can be tracked by tooling.
+ */
+final class ProfileReport {
+    /**
+     * The durations, deferrals and output attributed to an element across every round.
+     */
+    static final class ElementProfile {
+        private final String _name;
+        private long _validateNanos;
+        private long _actionNanos;
+        private long _emitNanos;
+        /**
+         * The part of the emission time that was spent while an action ran and is also included in the action time.
+         */
+        private long _actionEmitNanos;
+        private int _deferralCount;
+        private int _generatedTypeCount;
+        private long _generatedBytes;
+
+        ElementProfile(final String name) {
+            _name = name;
+        }
+
+        String getName() {
+            return _name;
+        }
+
+        long getTotalNanos() {
+            return _validateNanos + _actionNanos + _emitNanos - _actionEmitNanos;
+        }
+
+        int getDeferralCount() {
+            return _deferralCount;
+        }
+
+        int getGeneratedTypeCount() {
+            return _generatedTypeCount;
+        }
+
+        long getGeneratedBytes() {
+            return _generatedBytes;
+        }
+    }
+
+    /**
+     * The durations, deferrals and output of a round.
+     */
+    static final class RoundProfile {
+        private final int _number;
+        private long _validateNanos;
+        private long _extractDeferredNanos;
+        private long _actionNanos;
+        private long _emitNanos;
+        private int _processedElementCount;
+        private int _deferralCount;
+        private int _generatedTypeCount;
+        private long _generatedBytes;
+        private long _peakRetainedHeapBytes;
+
+        RoundProfile(final int number) {
+            _number = number;
+        }
+
+        int getNumber() {
+            return _number;
+        }
+
+        int getProcessedElementCount() {
+            return _processedElementCount;
+        }
+
+        int getDeferralCount() {
+            return _deferralCount;
+        }
+
+        int getGeneratedTypeCount() {
+            return _generatedTypeCount;
+        }
+
+        long getPeakRetainedHeapBytes() {
+            return _peakRetainedHeapBytes;
+        }
+    }
+
+    private final Map<String, ElementProfile> _elements = new LinkedHashMap<>();
+
+    private final List<RoundProfile> _rounds = new ArrayList<>();
+
+    /**
+     * The environment of the current round. Rounds are identified by the environment passed to the processor.
+     */
+    @Nullable
+    private RoundEnvironment _roundEnvironment;
+
+    @Nullable
+    private RoundProfile _round;
+
+    /**
+     * Start recording against the specified round if it differs from the current round.
+     *
+     * @param env the round environment.
+     */
+    void enterRound(final RoundEnvironment env) {
+        if (env != _roundEnvironment) {
+            _roundEnvironment = env;
+            _round = new RoundProfile(_rounds.size() + 1);
+            _rounds.add(_round);
+        }
+    }
+
+    void recordValidation(final Element element, final long nanos, final boolean deferred) {
+        final ElementProfile profile = element(element);
+        profile._validateNanos += nanos;
+        final RoundProfile round = round();
+        round._validateNanos += nanos;
+        if (deferred) {
+            profile._deferralCount++;
+            round._deferralCount++;
+        }
+    }
+
+    void recordExtractDeferred(final long nanos) {
+        round()._extractDeferredNanos += nanos;
+    }
+
+    void recordAction(final Element element, final long nanos) {
+        element(element)._actionNanos += nanos;
+        final RoundProfile round = round();
+        round._actionNanos += nanos;
+        round._processedElementCount++;
+    }
+
+    /**
+     * Record the time spent emitting a type.
+     *
+     * @param element      the element whose action generated the type, if any.
+     * @param nanos        the duration of the emission.
+     * @param duringAction true if the type was emitted while the action ran, so the duration is already included in
+     *                     the time recorded for the action.
+     */
+    void recordEmission(@Nullable final Element element, final long nanos, final boolean duringAction) {
+        if (null != element) {
+            final ElementProfile profile = element(element);
+            profile._emitNanos += nanos;
+            if (duringAction) {
+                profile._actionEmitNanos += nanos;
+            }
+        }
+        round()._emitNanos += nanos;
+    }
+
+    void recordGeneratedType(@Nullable final Element element, final String source) {
+        final long bytes = utf8Length(source);
+        if (null != element) {
+            final ElementProfile profile = element(element);
+            profile._generatedTypeCount++;
+            profile._generatedBytes += bytes;
+        }
+        final RoundProfile round = round();
+        round._generatedTypeCount++;
+        round._generatedBytes += bytes;
+    }
+
+    /**
+     * Record a sample of the heap retained during the current round.
+     *
+     * @param retainedHeapBytes the bytes retained on the heap.
+     */
+    void recordRetainedHeap(final long retainedHeapBytes) {
+        final RoundProfile round = round();
+        round._peakRetainedHeapBytes = Math.max(round._peakRetainedHeapBytes, retainedHeapBytes);
+    }
+
+    List<RoundProfile> getRounds() {
+        return _rounds;
+    }
+
+    /**
+     * Return the profiled elements ordered from slowest to fastest.
+     *
+     * @param limit the maximum number of elements to return.
+     * @return the slowest elements.
+     */
+    List<ElementProfile> getSlowestElements(final int limit) {
+        return _elements.values().stream()
+                .sorted(Comparator.comparingLong(ElementProfile::getTotalNanos).reversed())
+                .limit(Math.max(limit, 0))
+                .toList();
+    }
+
+    /**
+     * Write the report to the generator.
+     *
+     * @param g             the generator.
+     * @param processorName the name of the processor that is profiled.
+     * @param topN          the number of the slowest elements to include.
+     * @param stopWatches   the stop watches that timed sections of the processor.
+     */
+    void write(
+            final JsonGenerator g,
+            final String processorName,
+            final int topN,
+            final Collection<StopWatch> stopWatches) {
+        long generatedBytes = 0;
+        int generatedTypeCount = 0;
+        int deferralCount = 0;
+        for (final RoundProfile round : _rounds) {
+            generatedBytes += round._generatedBytes;
+            generatedTypeCount += round._generatedTypeCount;
+            deferralCount += round._deferralCount;
+        }
+        g.writeStartObject();
+        g.write("processor", processorName);
+        g.write("elementCount", _elements.size());
+        g.write("deferralCount", deferralCount);
+        g.write("generatedTypeCount", generatedTypeCount);
+        g.write("generatedBytes", generatedBytes);
+        g.writeStartArray("stopWatches");
+        for (final StopWatch stopWatch : stopWatches) {
+            g.writeStartObject();
+            g.write("name", stopWatch.getName());
+            g.write("durationNanos", stopWatch.getTotalDuration());
+            g.write("invocationCount", stopWatch.getInvocationCount());
+            g.write("minNanos", stopWatch.getMinDuration());
+            g.write("p50Nanos", stopWatch.getPercentileDuration(50));
+            g.write("p99Nanos", stopWatch.getPercentileDuration(99));
+            g.write("maxNanos", stopWatch.getMaxDuration());
+            g.write("allocatedBytes", stopWatch.getTotalAllocatedBytes());
+            g.writeStartArray("children");
+            for (final StopWatch child : stopWatch.getChildren()) {
+                g.write(child.getName());
+            }
+            g.writeEnd();
+            g.writeEnd();
+        }
+        g.writeEnd();
+        g.writeStartArray("rounds");
+        for (final RoundProfile round : _rounds) {
+            g.writeStartObject();
+            g.write("round", round._number);
+            g.write("validateNanos", round._validateNanos);
+            g.write("extractDeferredNanos", round._extractDeferredNanos);
+            g.write("actionNanos", round._actionNanos);
+            g.write("emitNanos", round._emitNanos);
+            g.write("processedElementCount", round._processedElementCount);
+            g.write("deferralCount", round._deferralCount);
+            g.write("generatedTypeCount", round._generatedTypeCount);
+            g.write("generatedBytes", round._generatedBytes);
+            g.write("peakRetainedHeapBytes", round._peakRetainedHeapBytes);
+            g.writeEnd();
+        }
+        g.writeEnd();
+        g.writeStartArray("slowestElements");
+        for (final ElementProfile element : getSlowestElements(topN)) {
+            g.writeStartObject();
+            g.write("element", element._name);
+            g.write("totalNanos", element.getTotalNanos());
+            g.write("validateNanos", element._validateNanos);
+            g.write("actionNanos", element._actionNanos);
+            g.write("emitNanos", element._emitNanos);
+            g.write("deferralCount", element._deferralCount);
+            g.write("generatedTypeCount", element._generatedTypeCount);
+            g.write("generatedBytes", element._generatedBytes);
+            g.writeEnd();
+        }
+        g.writeEnd();
+        g.writeEnd();
+    }
+
+    private ElementProfile element(final Element element) {
+        return _elements.computeIfAbsent(ElementsUtil.describe(element), ElementProfile::new);
+    }
+
+    private RoundProfile round() {
+        if (null == _round) {
+            // Work recorded before any round was entered is attributed to the first round
+            _round = new RoundProfile(1);
+            _rounds.add(_round);
+        }
+        return _round;
+    }
+
+    /**
+     * Return the number of bytes in the UTF-8 encoding of the string without encoding it.
+     */
+    static long utf8Length(final String value) {
+        long length = 0;
+        final int size = value.length();
+        for (int i = 0; i < size; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -9,14 +9,58 @@ import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 
 public final class ResourceUtil {
+    /**
+     * Set on the compiler thread while a processor in analysis-only mode is performing an action.
+     * The ProcessingEnvironment is shared by every processor in a compilation so the mode of the processor that is
+     * writing the resource can not be derived from it.
+     */
+    private static final ThreadLocal<Boolean> WRITES_SUPPRESSED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * The number of resources written on the current thread.
+     * Used to detect actions that write resources, as the output of such actions can not be cached.
+     */
+    private static final ThreadLocal<Integer> WRITE_COUNT = ThreadLocal.withInitial(() -> 0);
+
     private ResourceUtil() {}
 
+    /**
+     * Return true if resources written on the current thread are discarded without being written.
+     * This is true while an {@link AbstractStandardProcessor} configured with the <code>analysis_only</code> option
+     * is performing an action.
+     *
+     * @return true if resources written on the current thread are discarded.
+     */
+    public static boolean areWritesSuppressed() {
+        return WRITES_SUPPRESSED.get();
+    }
+
+    /**
+     * Specify whether resources written on the current thread are discarded.
+     *
+     * @param suppressed true if the resources are discarded.
+     * @return the previous value, which should be restored when the caller completes.
+     */
+    static boolean setWritesSuppressed(final boolean suppressed) {
+        final boolean previous = WRITES_SUPPRESSED.get();
+        WRITES_SUPPRESSED.set(suppressed);
+        return previous;
+    }
+
+    static int getWriteCount() {
+        return WRITE_COUNT.get();
+    }
+
     public static void writeResource(
             final ProcessingEnvironment processingEnv,
             final String filename,
             final String content,
             final Element element)
             throws IOException {
+        if (areWritesSuppressed()) {
+            return;
+        }
+        WRITE_COUNT.set(WRITE_COUNT.get() + 1);
         final FileObject resource =
                 processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", filename, element);
         try (final OutputStream outputStream = resource.openOutputStream()) {
@@ -0,0 +1,219 @@
+package org.realityforge.proton;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A source formatter shared by every processor in the JVM that loads the formatter through the same classloader.
+ * Compiler daemons run many compilations within one JVM, so sharing the formatter avoids repeating the class loading
+ * and JIT warm-up of the formatter in each compilation and in each processor. The formatter is located reflectively
+ * and bound through method handles so that proton has no compile-time dependency on the formatter.
+ */
+final class SourceFormatter {
+    static final String ORIGINAL_FORMATTER_CLASSNAME = "com.palantir.javaformat.java.Formatter";
+
+    /**
+     * A small source file formatted in the background to load and exercise the formatter before it is first needed.
+     */
+    private static final String WARM_UP_SOURCE = "package warmup;\n"
+            + "import java.util.List;\n"
+            + "public final class WarmUp<T> extends Object implements Runnable {\n"
+            + "  @Override public void run() { final List<T> values = List.of(); for (final T value : values) {"
+            + " if (null != value) { System.out.println(\"value \" + value); } } }\n"
+            + "}\n";
+
+    /**
+     * The format methods, bound to a formatter, keyed by the formatter class. The formatter is held by the class
+     * rather than by a map keyed on the classloader, as the formatter strongly references its class and thus the
+     * classloader that loaded it, and a map would retain both for the life of the JVM. Only the method handle is held
+     * as it references nothing loaded by the classloader of proton, which must not be retained when the formatter
+     * class is loaded by a parent classloader. A formatter is created once per formatter class, although two threads
+     * that race to create it may both create a formatter and only one is retained.
+     */
+    private static final ClassValue<MethodHandle> FORMATTERS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(final Class<?> type) {
+            try {
+                return create(type);
+            } catch (final ReflectiveOperationException e) {
+                throw new CreationException(e);
+            }
+        }
+    };
+
+    /**
+     * The classloaders for which a warm-up has been started.
+     * Access must be synchronized on the set.
+     */
+    private static final Set<ClassLoader> PREWARMED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final MethodHandle _formatSource;
+
+    private final String _version;
+
+    private SourceFormatter(final MethodHandle formatSource, final String version) {
+        _formatSource = Objects.requireNonNull(formatSource);
+        _version = Objects.requireNonNull(version);
+    }
+
+    /**
+     * Start creating and warming the formatter for the classloader on a background thread, if not already started.
+     *
+     * @param classLoader the classloader used to load the formatter.
+     */
+    static void prewarm(final ClassLoader classLoader) {
+        synchronized (PREWARMED) {
+            if (!PREWARMED.add(classLoader)) {
+                return;
+            }
+        }
+        final var thread = new Thread(() -> createAndWarm(classLoader), "Proton Source Formatter Warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Return the formatter for the classloader, creating it on the calling thread if it has not been created.
+     * If the formatter class is being initialized on the warm-up thread then this waits for the initialization to
+     * complete but not for the warm-up.
+     *
+     * @param classLoader the classloader used to load the formatter.
+     * @return the formatter.
+     * @throws ReflectiveOperationException if the formatter could not be located or created.
+     */
+    static SourceFormatter get(final ClassLoader classLoader) throws ReflectiveOperationException {
+        final Class<?> formatterClass = findFormatterClass(classLoader);
+        try {
+            return new SourceFormatter(FORMATTERS.get(formatterClass), formatterVersion(formatterClass));
+        } catch (final CreationException e) {
+            throw e.getCause();
+        }
+    }
+
+    String getVersion() {
+        return _version;
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object o) {
+        // Formatters are equal if they share the same underlying formatter
+        return this == o || (o instanceof final SourceFormatter other && _formatSource == other._formatSource);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(_formatSource);
+    }
+
+    /**
+     * Format the source.
+     *
+     * @param source the source to format.
+     * @return the formatted source.
+     * @throws Exception if the formatter rejects the source.
+     */
+    String format(final String source) throws Exception {
+        try {
+            return (String) _formatSource.invokeExact(source);
+        } catch (final Exception | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Format a small source file so that the formatter classes are loaded and the hot paths are compiled.
+     *
+     * @return true if the source was formatted, false if the formatter failed.
+     */
+    boolean warmUp() {
+        try {
+            format(WARM_UP_SOURCE);
+            return true;
+        } catch (final Exception | LinkageError e) {
+            // A formatter that can not format is reported when a processor first uses it
+            return false;
+        }
+    }
+
+    private static void createAndWarm(final ClassLoader classLoader) {
+        try {
+            get(classLoader).warmUp();
+        } catch (final ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // Forget the failure so that a later compilation, potentially with a corrected environment, retries.
+            // The failure is reported when a processor attempts to use the formatter
+            synchronized (PREWARMED) {
+                PREWARMED.remove(classLoader);
+            }
+        }
+    }
+
+    private static Class<?> findFormatterClass(final ClassLoader classLoader) throws ClassNotFoundException {
+        try {
+            return Class.forName(ORIGINAL_FORMATTER_CLASSNAME, true, classLoader);
+        } catch (final ClassNotFoundException originalNotFound) {
+            try {
+                return Class.forName(getVendorFormatterClassname(), true, classLoader);
+            } catch (final ClassNotFoundException vendorNotFound) {
+                vendorNotFound.addSuppressed(originalNotFound);
+                throw vendorNotFound;
+            }
+        }
+    }
+
+    private static MethodHandle create(final Class<?> formatterClass) throws ReflectiveOperationException {
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final MethodHandle create = lookup.findStatic(formatterClass, "create", MethodType.methodType(formatterClass));
+        final MethodHandle formatSource = lookup.findVirtual(
+                formatterClass, "formatSource", MethodType.methodType(String.class, String.class));
+        final Object formatter;
+        try {
+            formatter = create.invoke();
+        } catch (final ReflectiveOperationException | RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException(t);
+        }
+        return formatSource.bindTo(formatter);
+    }
+
+    /**
+     * Return a string identifying the formatter implementation.
+     * The location of the jar is included as build tools typically store artifacts at version specific paths.
+     */
+    private static String formatterVersion(final Class<?> formatterClass) {
+        final CodeSource codeSource = formatterClass.getProtectionDomain().getCodeSource();
+        final URL location = null != codeSource ? codeSource.getLocation() : null;
+        final String implementationVersion = formatterClass.getPackage().getImplementationVersion();
+        return formatterClass.getName() + "@" + (null != implementationVersion ? implementationVersion : "unknown")
+                + "@" + (null != location ? location : "unknown");
+    }
+
+    static String getVendorFormatterClassname() {
+        return SourceFormatter.class.getPackageName() + ".vendor.javaformat.java.Formatter";
+    }
+
+    /**
+     * Carries a failure to create a formatter out of {@link ClassValue#computeValue(Class)}.
+     * The failure is not retained by the ClassValue so a later request attempts to create the formatter again.
+     */
+    private static final class CreationException extends RuntimeException {
+        private CreationException(final ReflectiveOperationException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized ReflectiveOperationException getCause() {
+            return (ReflectiveOperationException) super.getCause();
+        }
+    }
+}
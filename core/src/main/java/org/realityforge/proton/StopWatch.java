@@ -1,20 +1,70 @@
 package org.realityforge.proton;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
- * A simple class used to time sections of code and accumulate times for section over multiple executions.
+ * A class used to time sections of code and accumulate times for section over multiple executions.
+ * A stop watch records the number of invocations, the total, minimum and maximum durations and a histogram of
+ * durations from which percentiles are estimated. A stop watch may be used by several threads at once.
+ *
+ * <p>Stop watches started while another stop watch is running on the same thread are nested within it. The enclosing
+ * stop watch records the nested stop watch as a child, so the timings can be reported as a tree. A stop watch that is
+ * started while it is already running on the same thread, such as by a recursive helper, is re-entered and only the
+ * outermost invocation is timed. A stop watch is stopped on the thread that started it.</p>
  */
 public final class StopWatch {
+    /**
+     * The number of bits used to divide each power of two range of the histogram, giving an error below 12.5%.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    /**
+     * The stop watches running on each thread, innermost last.
+     */
+    private static final ThreadLocal<Deque<Frame>> ACTIVE_FRAMES = ThreadLocal.withInitial(ArrayDeque::new);
+
     private final String _name;
+    /**
+     * The number of timed invocations since last reset.
+     */
+    private long _invocationCount;
     /**
      * The total time spent in timer since last reset.
      */
     private long _totalDuration;
+    private long _minDuration;
+    private long _maxDuration;
     /**
-     * The time at which timer was started or 0 if no timer is active.
+     * The number of invocations whose duration falls within each bucket.
+     * The first buckets each hold a single value and each later power of two range is divided into equal buckets.
      */
-    private long _start;
+    private final long[] _histogram = new long[BUCKET_COUNT];
+    /**
+     * The total bytes allocated by the thread that ran the timer since last reset.
+     */
+    private long _totalAllocatedBytes;
+    /**
+     * The stop watches that have been started while this stop watch was running, in the order first started.
+     */
+    private final Set<StopWatch> _children = new LinkedHashSet<>();
+    /**
+     * True if the stop watch has been started while no other stop watch was running on the thread.
+     */
+    private boolean _topLevel;
+
+    /**
+     * An invocation of a stop watch running on a thread.
+     */
+    private record Frame(StopWatch stopWatch, long start, long startAllocatedBytes, boolean reentered) {}
 
     public StopWatch(final String name) {
         _name = Objects.requireNonNull(name);
@@ -24,31 +74,260 @@ public final class StopWatch {
         return _name;
     }
 
-    public long getTotalDuration() {
+    public synchronized long getTotalDuration() {
         return _totalDuration;
     }
 
+    /**
+     * Return the number of timed invocations since last reset.
+     * Re-entrant invocations are not counted as they are part of the enclosing invocation.
+     *
+     * @return the number of timed invocations.
+     */
+    public synchronized long getInvocationCount() {
+        return _invocationCount;
+    }
+
+    /**
+     * Return the shortest duration of an invocation since last reset, or 0 if there have been no invocations.
+     *
+     * @return the shortest duration.
+     */
+    public synchronized long getMinDuration() {
+        return _minDuration;
+    }
+
+    /**
+     * Return the longest duration of an invocation since last reset, or 0 if there have been no invocations.
+     *
+     * @return the longest duration.
+     */
+    public synchronized long getMaxDuration() {
+        return _maxDuration;
+    }
+
+    /**
+     * Return an estimate of the duration that the specified percentage of invocations did not exceed.
+     * The estimate is the upper bound of the histogram bucket containing the percentile, limited to the range of
+     * durations observed, and is within 12.5% of the exact value.
+     *
+     * @param percentile the percentile, greater than 0 and at most 100.
+     * @return the estimated duration, or 0 if there have been no invocations.
+     */
+    public synchronized long getPercentileDuration(final double percentile) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile " + percentile + " is not in the range (0, 100]");
+        }
+        if (0 == _invocationCount) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile / 100 * _invocationCount);
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += _histogram[i];
+            if (count >= rank) {
+                return Math.max(_minDuration, Math.min(_maxDuration, bucketUpperBound(i)));
+            }
+        }
+        return _maxDuration;
+    }
+
+    /**
+     * Return the total bytes allocated while the timer was running since last reset.
+     * Allocations are measured on the thread that started and stopped the timer.
+     *
+     * @return the total bytes allocated, or -1 if the JVM does not support measuring allocations.
+     */
+    public synchronized long getTotalAllocatedBytes() {
+        return HeapAccounting.isAllocationAccountingSupported() ? _totalAllocatedBytes : -1;
+    }
+
+    /**
+     * Return the stop watches that have been started while this stop watch was running.
+     *
+     * @return the nested stop watches in the order they were first started.
+     */
+    public synchronized List<StopWatch> getChildren() {
+        return List.copyOf(_children);
+    }
+
+    /**
+     * Return true if the stop watch has been started while no other stop watch was running on the thread.
+     *
+     * @return true if the stop watch has been started outside any other stop watch.
+     */
+    public synchronized boolean isTopLevel() {
+        return _topLevel;
+    }
+
     public void start() {
-        if (0 != _start) {
-            throw new IllegalStateException("Attempted to start " + _name + " timer that had already been started");
+        final Deque<Frame> frames = ACTIVE_FRAMES.get();
+        final Frame parent = frames.peekLast();
+        boolean reentered = false;
+        for (final Frame frame : frames) {
+            if (this == frame.stopWatch()) {
+                reentered = true;
+                break;
+            }
+        }
+        if (null == parent) {
+            synchronized (this) {
+                _topLevel = true;
+            }
+        } else if (!reentered) {
+            parent.stopWatch().addChild(this);
         }
-        _start = System.nanoTime();
+        frames.addLast(new Frame(
+                this, System.nanoTime(), reentered ? 0 : HeapAccounting.getCurrentThreadAllocatedBytes(), reentered));
     }
 
     public void stop() {
-        if (0 == _start) {
-            throw new IllegalStateException("Attempted to stop '" + _name + "' timer that had not been started");
+        final long end = System.nanoTime();
+        final Deque<Frame> frames = ACTIVE_FRAMES.get();
+        final Iterator<Frame> iterator = frames.descendingIterator();
+        while (iterator.hasNext()) {
+            final Frame frame = iterator.next();
+            if (this == frame.stopWatch()) {
+                // Stop watches started within this one that were never stopped, such as when an exception was
+                // thrown, are abandoned so they do not corrupt the nesting of later invocations
+                while (frames.peekLast() != frame) {
+                    frames.removeLast();
+                }
+                frames.removeLast();
+                if (frames.isEmpty()) {
+                    ACTIVE_FRAMES.remove();
+                }
+                if (!frame.reentered()) {
+                    final long allocatedBytes =
+                            HeapAccounting.getCurrentThreadAllocatedBytes() - frame.startAllocatedBytes();
+                    record(end - frame.start(), allocatedBytes);
+                }
+                return;
+            }
         }
-        _totalDuration += System.nanoTime() - _start;
-        _start = 0;
+        throw new IllegalStateException("Attempted to stop '" + _name + "' timer that had not been started");
     }
 
-    public void reset() {
+    public synchronized void reset() {
+        _invocationCount = 0;
         _totalDuration = 0;
+        _minDuration = 0;
+        _maxDuration = 0;
+        _totalAllocatedBytes = 0;
+        Arrays.fill(_histogram, 0);
+    }
+
+    private synchronized void record(final long duration, final long allocatedBytes) {
+        _minDuration = 0 == _invocationCount ? duration : Math.min(_minDuration, duration);
+        _maxDuration = Math.max(_maxDuration, duration);
+        _invocationCount++;
+        _totalDuration += duration;
+        _totalAllocatedBytes += allocatedBytes;
+        _histogram[bucketIndex(duration)]++;
+    }
+
+    private synchronized void addChild(final StopWatch child) {
+        _children.add(child);
+    }
+
+    /**
+     * Return the histogram bucket for the duration.
+     * Durations below the number of sub-buckets have their own bucket, and larger durations are placed according to
+     * their highest set bit and the bits that follow it.
+     */
+    static int bucketIndex(final long duration) {
+        if (duration < SUB_BUCKET_COUNT) {
+            return (int) Math.max(duration, 0);
+        } else {
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(duration) - SUB_BUCKET_BITS;
+            final int subBucket = (int) (duration >>> shift) & (SUB_BUCKET_COUNT - 1);
+            return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+        }
+    }
+
+    /**
+     * Return the largest duration held by the histogram bucket.
+     */
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        } else {
+            final int shift = index / SUB_BUCKET_COUNT - 1;
+            final long upperBound = ((SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT + 1L) << shift) - 1;
+            return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+        }
+    }
+
+    /**
+     * Describe the timings of the stop watches and the stop watches nested within them as a tree.
+     * The stop watches that were started outside any other stop watch, or never started, form the roots of the tree
+     * and each is followed by its children. A stop watch started within several stop watches is listed under each
+     * of them with its overall timings. Siblings are ordered by decreasing total duration.
+     *
+     * @param stopWatches the stop watches to describe.
+     * @return a line for each stop watch, indented by two spaces per level of nesting.
+     */
+    static List<String> describeTree(final Iterable<StopWatch> stopWatches) {
+        final List<StopWatch> roots = new ArrayList<>();
+        for (final StopWatch stopWatch : stopWatches) {
+            if (stopWatch.isTopLevel() || 0 == stopWatch.getInvocationCount()) {
+                roots.add(stopWatch);
+            }
+        }
+        final List<String> lines = new ArrayList<>();
+        describeTree(lines, roots, "", new LinkedHashSet<>());
+        return lines;
+    }
+
+    private static void describeTree(
+            final List<String> lines,
+            final List<StopWatch> stopWatches,
+            final String indent,
+            final Set<StopWatch> path) {
+        final List<StopWatch> sorted = new ArrayList<>(stopWatches);
+        sorted.sort((a, b) -> Long.compare(b.getTotalDuration(), a.getTotalDuration()));
+        for (final StopWatch stopWatch : sorted) {
+            // A stop watch may be nested within itself via another stop watch so the path is tracked to stop cycles
+            if (path.add(stopWatch)) {
+                lines.add(indent + stopWatch.describe());
+                describeTree(lines, stopWatch.getChildren(), indent + "  ", path);
+                path.remove(stopWatch);
+            }
+        }
+    }
+
+    /**
+     * Return a description of the timings of the stop watch.
+     *
+     * @return a description of the timings of the stop watch.
+     */
+    public synchronized String describe() {
+        final StringBuilder sb = new StringBuilder()
+                .append(_name)
+                .append(": ")
+                .append(_totalDuration)
+                .append("ns in ")
+                .append(_invocationCount)
+                .append(" calls");
+        if (0 != _invocationCount) {
+            sb.append(" (min ")
+                    .append(_minDuration)
+                    .append(", p50 ")
+                    .append(getPercentileDuration(50))
+                    .append(", p99 ")
+                    .append(getPercentileDuration(99))
+                    .append(", max ")
+                    .append(_maxDuration)
+                    .append(')');
+        }
+        if (HeapAccounting.isAllocationAccountingSupported()) {
+            sb.append(", ").append(_totalAllocatedBytes).append(" bytes allocated");
+        }
+        return sb.toString();
     }
 
     @Override
     public String toString() {
-        return _name + ": " + _totalDuration;
+        return _name + ": " + getTotalDuration();
     }
 }
@@ -15,9 +15,12 @@
  */
 package org.realityforge.proton;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -62,6 +65,24 @@ public final class SuperficialValidation {
         return new ValidatorVisitors(processingEnv).validateElement(element);
     }
 
+    /**
+     * Validate the element, treating unresolved types whose names are promised as resolvable.
+     * This allows an element that references a type that will be generated later in the same round to be
+     * processed without waiting for a subsequent round. The names are as they appear in the source and may be
+     * simple, partially qualified or fully qualified.
+     *
+     * @param processingEnv      the processing environment.
+     * @param element            the element to validate.
+     * @param isPromisedTypeName the predicate that returns true if the name of an unresolved type is promised.
+     * @return true if the element is valid.
+     */
+    public static boolean validateElement(
+            final ProcessingEnvironment processingEnv,
+            final Element element,
+            final Predicate<String> isPromisedTypeName) {
+        return new ValidatorVisitors(processingEnv, null, isPromisedTypeName).validateElement(element);
+    }
+
     public static boolean validateTypes(
             final ProcessingEnvironment processingEnv, final Iterable<? extends TypeMirror> types) {
         return new ValidatorVisitors(processingEnv).validateTypes(types);
@@ -71,6 +92,62 @@ public final class SuperficialValidation {
         return new ValidatorVisitors(processingEnv).validateType(type);
     }
 
+    /**
+     * Return the names of unresolved types that cause the element to fail validation.
+     * The names are as they appear in the source and may be simple, partially qualified or fully qualified.
+     * Validation continues past an invalid member, type argument or parameter so that the unresolved types of
+     * sibling elements are also collected, but the result is not guaranteed to be exhaustive. An empty set is
+     * returned when the element is valid or when validation failed for a reason other than an unresolved type.
+     *
+     * @param processingEnv the processing environment.
+     * @param element       the element to validate.
+     * @return the names of unresolved types encountered while validating the element.
+     */
+    public static Set<String> collectUnresolvedTypeNames(
+            final ProcessingEnvironment processingEnv, final Element element) {
+        final Set<String> unresolvedTypeNames = new LinkedHashSet<>();
+        new ValidatorVisitors(processingEnv, unresolvedTypeNames, null).validateElement(element);
+        return unresolvedTypeNames;
+    }
+
+    /**
+     * Return the names of unresolved types that cause the element to fail validation, excluding promised names.
+     *
+     * @param processingEnv      the processing environment.
+     * @param element            the element to validate.
+     * @param isPromisedTypeName the predicate that returns true if the name of an unresolved type is promised.
+     * @return the names of unresolved types encountered while validating the element.
+     * @see #collectUnresolvedTypeNames(ProcessingEnvironment, Element)
+     */
+    public static Set<String> collectUnresolvedTypeNames(
+            final ProcessingEnvironment processingEnv,
+            final Element element,
+            final Predicate<String> isPromisedTypeName) {
+        final Set<String> unresolvedTypeNames = new LinkedHashSet<>();
+        validateElement(processingEnv, element, isPromisedTypeName, unresolvedTypeNames);
+        return unresolvedTypeNames;
+    }
+
+    /**
+     * Validate the element and collect the names of unresolved types that cause it to fail validation in a single
+     * traversal, treating unresolved types whose names are promised as resolvable. This avoids traversing an invalid
+     * element once to detect that it is invalid and again to collect the unresolved types.
+     *
+     * @param processingEnv       the processing environment.
+     * @param element             the element to validate.
+     * @param isPromisedTypeName  the predicate that returns true if the name of an unresolved type is promised.
+     * @param unresolvedTypeNames the set to which the names of unresolved types are added.
+     * @return true if the element is valid.
+     * @see #collectUnresolvedTypeNames(ProcessingEnvironment, Element)
+     */
+    public static boolean validateElement(
+            final ProcessingEnvironment processingEnv,
+            final Element element,
+            final Predicate<String> isPromisedTypeName,
+            final Set<String> unresolvedTypeNames) {
+        return new ValidatorVisitors(processingEnv, unresolvedTypeNames, isPromisedTypeName).validateElement(element);
+    }
+
     private static final class ValidatorVisitors {
         final TypeValidatingVisitor _typeValidatingVisitor;
 
@@ -78,10 +155,63 @@ public final class SuperficialValidation {
 
         final ValueValidatingVisitor _valueValidatingVisitor;
 
+        /**
+         * The set into which the names of unresolved types are collected.
+         * When null, validation completes as soon as the first invalid element or type is detected.
+         */
+        @Nullable
+        final Set<String> _unresolvedTypeNames;
+
+        /**
+         * The predicate that returns true if an unresolved type with the name will be generated and should be
+         * treated as resolvable. When null, every unresolved type is invalid.
+         */
+        @Nullable
+        final Predicate<String> _isPromisedTypeName;
+
         ValidatorVisitors(final ProcessingEnvironment processingEnv) {
+            this(processingEnv, null, null);
+        }
+
+        ValidatorVisitors(
+                final ProcessingEnvironment processingEnv,
+                @Nullable final Set<String> unresolvedTypeNames,
+                @Nullable final Predicate<String> isPromisedTypeName) {
             _typeValidatingVisitor = new TypeValidatingVisitor(this);
             _elementValidatingVisitor = new ElementValidatingVisitor(this);
             _valueValidatingVisitor = new ValueValidatingVisitor(this, processingEnv);
+            _unresolvedTypeNames = unresolvedTypeNames;
+            _isPromisedTypeName = isPromisedTypeName;
+        }
+
+        /**
+         * Return true if the unresolved type is promised, otherwise record the name of the type if collecting.
+         */
+        private boolean isPromisedOrRecordUnresolvedType(final ErrorType type) {
+            if (null == _isPromisedTypeName && null == _unresolvedTypeNames) {
+                return false;
+            }
+            final String typeName = unresolvedTypeName(type);
+            if (typeName.isEmpty()) {
+                return false;
+            } else if (null != _isPromisedTypeName && _isPromisedTypeName.test(typeName)) {
+                return true;
+            } else {
+                if (null != _unresolvedTypeNames) {
+                    _unresolvedTypeNames.add(typeName);
+                }
+                return false;
+            }
+        }
+
+        private static String unresolvedTypeName(final ErrorType type) {
+            final Element element = type.asElement();
+            final String name = element instanceof final TypeElement typeElement
+                    ? typeElement.getQualifiedName().toString()
+                    : type.toString();
+            // Strip any type arguments rendered as part of the name
+            final int typeArgumentsStart = name.indexOf('<');
+            return -1 == typeArgumentsStart ? name : name.substring(0, typeArgumentsStart);
         }
 
         private boolean validateElement(final Element element) {
@@ -93,21 +223,29 @@ public final class SuperficialValidation {
         }
 
         private boolean validateElements(final Iterable<? extends Element> elements) {
+            boolean valid = true;
             for (final Element element : elements) {
                 if (!validateElement(element)) {
-                    return false;
+                    if (null == _unresolvedTypeNames) {
+                        return false;
+                    }
+                    valid = false;
                 }
             }
-            return true;
+            return valid;
         }
 
         private boolean validateTypes(final Iterable<? extends TypeMirror> types) {
+            boolean valid = true;
             for (final TypeMirror type : types) {
                 if (!validateType(type)) {
-                    return false;
+                    if (null == _unresolvedTypeNames) {
+                        return false;
+                    }
+                    valid = false;
                 }
             }
-            return true;
+            return valid;
         }
     }
 
@@ -329,7 +467,7 @@ public final class SuperficialValidation {
 
         @Override
         public Boolean visitError(final ErrorType t, final @Nullable Void p) {
-            return false;
+            return _visitors.isPromisedOrRecordUnresolvedType(t) && _visitors.validateTypes(t.getTypeArguments());
         }
 
         @Override
@@ -0,0 +1,88 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.annotations.Test;
+
+public final class DebugLogTest {
+    @Test
+    public void logWritesMessagesInOrderWhenClosed() throws Exception {
+        final Path directory = Files.createTempDirectory("debug-log");
+        try {
+            final Path path = directory.resolve("logs/debug.log");
+            final var log = new DebugLog(path, "Test Debug Log");
+
+            log.log("first");
+            log.log("second \u00e9");
+            log.close();
+            log.log("discarded");
+            log.close();
+
+            assertEquals(log.getPath(), path);
+            assertEquals(Files.readAllLines(path), List.of("first", "second \u00e9"));
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void logAcceptsMessagesFromSeveralThreads() throws Exception {
+        final Path directory = Files.createTempDirectory("debug-log");
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final Path path = directory.resolve("debug.log");
+            final var log = new DebugLog(path, "Test Debug Log");
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                        log.log(thread + ":" + j);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            log.close();
+
+            final List<String> lines = Files.readAllLines(path);
+            assertEquals(lines.size(), 40000);
+            assertTrue(lines.indexOf("2:0") < lines.indexOf("2:9999"));
+        } finally {
+            executor.shutdownNow();
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void constructorFailsWhenFileCanNotBeCreated() throws Exception {
+        final Path directory = Files.createTempDirectory("debug-log");
+        try {
+            final Path file = Files.createFile(directory.resolve("file"));
+
+            expectThrows(IOException.class, () -> new DebugLog(file.resolve("debug.log"), "Test Debug Log"));
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void formatSubstitutesArgumentsForPlaceholders() {
+        assertEquals(DebugLog.format("Plain message"), "Plain message");
+        assertEquals(DebugLog.format("Element {} deferred", "com.example.Alpha"), "Element com.example.Alpha deferred");
+        assertEquals(DebugLog.format("{} of {}", 1, 2), "1 of 2");
+        assertEquals(DebugLog.format("{}, {} and {}", "a", null, 'c'), "a, null and c");
+        assertEquals(DebugLog.format("Only {}", "one", "two"), "Only one");
+        assertEquals(DebugLog.format("{} and {}", "one"), "one and {}");
+    }
+}
@@ -1,10 +1,16 @@
 package org.realityforge.proton;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
@@ -19,8 +25,8 @@ public final class DeferredElementSetTest {
         set.deferElement(element);
         set.deferElement(element);
 
-        assertEquals(set.getDeferred().size(), 1);
-        assertTrue(set.getDeferred().contains(element));
+        assertEquals(set.getDeferredTypeNames(), Set.of("com.example.Widget"));
+        assertFalse(set.isEmpty());
     }
 
     @Test
@@ -30,7 +36,7 @@ public final class DeferredElementSetTest {
 
         set.clear();
 
-        assertTrue(set.getDeferred().isEmpty());
+        assertTrue(set.isEmpty());
     }
 
     @Test
@@ -49,7 +55,131 @@ public final class DeferredElementSetTest {
                 set.extractDeferred(processingEnvironment("com.example.Widget", resolved))
                         .get(0),
                 resolved);
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void extractDeferredWithNewTypeNamesOnlyExtractsElementsThatMayResolve() {
+        final var set = new DeferredElementSet();
+        final TypeElement waitingOnQualified = typeElement("com.example.A");
+        final TypeElement waitingOnSimple = typeElement("com.example.B");
+        final TypeElement waitingOnNested = typeElement("com.example.C");
+        final TypeElement waitingOnPartial = typeElement("com.example.D");
+        final TypeElement waitingOnOther = typeElement("com.example.E");
+        final TypeElement unknownCause = typeElement("com.example.F");
+        set.deferElement(waitingOnQualified, List.of("com.example.A_Generated"));
+        set.deferElement(waitingOnSimple, List.of("B_Generated"));
+        set.deferElement(waitingOnNested, List.of("C_Generated.Builder"));
+        set.deferElement(waitingOnPartial, List.of("example.D_Generated"));
+        set.deferElement(waitingOnOther, List.of("com.example.Other", "Another"));
+        set.deferElement(unknownCause);
+
+        final List<TypeElement> extracted = set.extractDeferred(
+                processingEnvironment(List.of(
+                        waitingOnQualified,
+                        waitingOnSimple,
+                        waitingOnNested,
+                        waitingOnPartial,
+                        waitingOnOther,
+                        unknownCause)),
+                List.of("com.example.A_Generated",
+                        "com.example.B_Generated",
+                        "com.example.C_Generated",
+                        "com.example.D_Generated",
+                        "com.other.Other"));
+
+        assertEquals(
+                extracted,
+                List.of(waitingOnQualified, waitingOnSimple, waitingOnNested, waitingOnPartial, unknownCause));
+        assertEquals(set.getDeferredTypeNames(), Set.of("com.example.E"));
+        assertEquals(set.getUnresolvedTypeNames(waitingOnOther), Set.of("com.example.Other", "Another"));
+    }
+
+    @Test
+    public void extractDeferredOmitsTypesThatNoLongerExist() {
+        final var set = new DeferredElementSet();
+        final TypeElement retained = typeElement("com.example.Widget");
+        set.deferElement(retained);
+        set.deferElement(typeElement("com.example.Removed"));
+
+        assertEquals(set.extractDeferred(processingEnvironment(List.of(retained))), List.of(retained));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void getDeferredResolvesDeferredTypesThroughTheLastProcessingEnvironment() {
+        final var set = new DeferredElementSet();
+        final TypeElement retained = typeElement("com.example.Widget");
         assertTrue(set.getDeferred().isEmpty());
+
+        set.deferElement(retained);
+        assertTrue(set.getDeferred().isEmpty());
+
+        set.extractDeferred(processingEnvironment(List.of(retained)));
+        set.deferElement(retained);
+        set.deferElement(typeElement("com.example.Removed"));
+
+        assertEquals(set.getDeferred(), Set.of(retained));
+        expectThrows(UnsupportedOperationException.class, () -> set.getDeferred().clear());
+        assertEquals(set.getDeferredTypeNames(), Set.of("com.example.Widget", "com.example.Removed"));
+    }
+
+    @Test
+    public void deferElementInternsNames() {
+        final var set = new DeferredElementSet();
+        final TypeElement element = typeElement(new String("com.example.Widget".toCharArray()));
+        set.deferElement(element, List.of(new String("Widget_Generated".toCharArray())));
+
+        assertSame(set.getDeferredTypeNames().iterator().next(), "com.example.Widget");
+        assertSame(set.getUnresolvedTypeNames(element).iterator().next(), "Widget_Generated");
+        assertTrue(set.estimateRetainedBytes() > 0);
+    }
+
+    @Test
+    public void getUnresolvedTypeNamesIsEmptyForUnknownCause() {
+        final var set = new DeferredElementSet();
+        final TypeElement element = typeElement("com.example.Widget");
+        set.deferElement(element);
+
+        assertTrue(set.getUnresolvedTypeNames(element).isEmpty());
+        assertTrue(set.getUnresolvedTypeNames(typeElement("com.example.Other")).isEmpty());
+    }
+
+    @Test
+    public void getWaitingTypeNamesReturnsCopyOfDeferredTypeNames() {
+        final var set = new DeferredElementSet();
+        set.deferElement(typeElement("com.example.Widget"), List.of("Widget_Generated"));
+        set.deferElement(typeElement("com.example.Other"));
+
+        final Map<String, Set<String>> waitingTypeNames = set.getWaitingTypeNames();
+        set.clear();
+
+        assertEquals(
+                waitingTypeNames,
+                Map.of("com.example.Widget", Set.of("Widget_Generated"), "com.example.Other", Set.of()));
+    }
+
+    /**
+     * Return a processing environment that resolves the name of each supplied element to that element.
+     */
+    private static ProcessingEnvironment processingEnvironment(final List<TypeElement> types) {
+        final Map<String, TypeElement> elementsByName = new HashMap<>();
+        for (final TypeElement type : types) {
+            elementsByName.put(type.getQualifiedName().toString(), type);
+        }
+        final Elements elements = TestUtil.proxy(Elements.class, (self, method, args) -> {
+            if ("getTypeElement".equals(method.getName())) {
+                return elementsByName.get(args[0].toString());
+            }
+            return TestUtil.unsupported(method);
+        });
+        return TestUtil.proxy(ProcessingEnvironment.class, (self, method, args) -> {
+            if ("getElementUtils".equals(method.getName())) {
+                return elements;
+            }
+            return TestUtil.unsupported(method);
+        });
     }
 
     private static ProcessingEnvironment processingEnvironment(final String qualifiedName, final TypeElement resolved) {
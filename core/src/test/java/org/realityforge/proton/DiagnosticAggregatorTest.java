@@ -0,0 +1,138 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import org.testng.annotations.Test;
+
+public final class DiagnosticAggregatorTest {
+    @Test
+    public void reportDiscardsDuplicateDiagnostics() {
+        final var aggregator = new DiagnosticAggregator(10);
+        final Element alpha = element("Alpha");
+        final Element beta = element("Beta");
+
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", alpha, null, null));
+        assertFalse(aggregator.report(Diagnostic.Kind.WARNING, new StringBuilder("Bad method"), alpha, null, null));
+        assertTrue(aggregator.report(Diagnostic.Kind.ERROR, "Bad method", alpha, null, null));
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", beta, null, null));
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad field", alpha, null, null));
+        assertTrue(aggregator.report(Diagnostic.Kind.NOTE, "Unlocated", null, null, null));
+
+        final List<String> messages = new ArrayList<>();
+        aggregator.flush(messager(messages));
+
+        assertEquals(
+                messages,
+                List.of(
+                        "WARNING Bad method on Alpha",
+                        "ERROR Bad method on Alpha",
+                        "WARNING Bad method on Beta",
+                        "WARNING Bad field on Alpha",
+                        "NOTE Unlocated"));
+        assertEquals(aggregator.getSuppressedCount(), 0);
+    }
+
+    @Test
+    public void reportDiscardsDuplicatesReportedOnDifferentInstancesOfTheSameElement() {
+        final var aggregator = new DiagnosticAggregator(10);
+
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", element("Alpha"), null, null));
+        assertFalse(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", element("Alpha"), null, null));
+
+        final List<String> messages = new ArrayList<>();
+        aggregator.flush(messager(messages));
+
+        assertEquals(messages, List.of("WARNING Bad method on Alpha"));
+    }
+
+    @Test
+    public void reportSuppressesRepeatsBeyondTheLimitAndFlushSummarizesThem() {
+        final var aggregator = new DiagnosticAggregator(2);
+
+        for (int i = 0; i < 5; i++) {
+            aggregator.report(Diagnostic.Kind.WARNING, "Bad method", element("Type" + i), null, null);
+        }
+        aggregator.report(Diagnostic.Kind.ERROR, "Missing type", element("Alpha"), null, null);
+
+        final List<String> messages = new ArrayList<>();
+        aggregator.flush(messager(messages));
+        aggregator.report(Diagnostic.Kind.WARNING, "Bad method", element("Type5"), null, null);
+        aggregator.flush(messager(messages));
+
+        assertEquals(
+                messages,
+                List.of(
+                        "WARNING Bad method on Type0",
+                        "WARNING Bad method on Type1",
+                        "ERROR Missing type on Alpha",
+                        "WARNING Suppressed 3 further diagnostics with the message: Bad method on Type0",
+                        "WARNING Suppressed 1 further diagnostics with the message: Bad method on Type5"));
+        assertEquals(aggregator.getSuppressedCount(), 4);
+    }
+
+    @Test
+    public void resetAllowsDiagnosticsToBeReportedAgain() {
+        final var aggregator = new DiagnosticAggregator(1);
+        final Element alpha = element("Alpha");
+
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", alpha, null, null));
+        assertFalse(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", alpha, null, null));
+        aggregator.reset();
+
+        assertTrue(aggregator.report(Diagnostic.Kind.WARNING, "Bad method", alpha, null, null));
+
+        final List<String> messages = new ArrayList<>();
+        aggregator.flush(messager(messages));
+
+        assertEquals(messages, List.of("WARNING Bad method on Alpha", "WARNING Bad method on Alpha"));
+    }
+
+    private static Element element(final String name) {
+        return TestUtil.proxy(TypeElement.class, (self, method, args) -> {
+            if ("getSimpleName".equals(method.getName()) || "getQualifiedName".equals(method.getName())) {
+                return TestUtil.name(name);
+            }
+            return TestUtil.unsupported(method);
+        });
+    }
+
+    private static Messager messager(final List<String> messages) {
+        return new Messager() {
+            @Override
+            public void printMessage(final Diagnostic.Kind kind, final CharSequence msg) {
+                messages.add(kind + " " + msg);
+            }
+
+            @Override
+            public void printMessage(final Diagnostic.Kind kind, final CharSequence msg, final Element e) {
+                messages.add(kind + " " + msg + (null == e ? "" : " on " + e.getSimpleName()));
+            }
+
+            @Override
+            public void printMessage(
+                    final Diagnostic.Kind kind, final CharSequence msg, final Element e, final AnnotationMirror a) {
+                printMessage(kind, msg, e);
+            }
+
+            @Override
+            public void printMessage(
+                    final Diagnostic.Kind kind,
+                    final CharSequence msg,
+                    final Element e,
+                    final AnnotationMirror a,
+                    final AnnotationValue v) {
+                printMessage(kind, msg, e);
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.TypeElement;
+import org.testng.annotations.Test;
+
+public final class FingerprintsTest {
+    private static final String BASE = """
+        package com.example;
+        @interface Marker {
+          String value() default "default";
+        }
+        interface Named {
+          String name();
+        }
+        public class Base implements Named {
+          @Marker
+          protected int count;
+          public String name() { return "base"; }
+        }
+        """;
+
+    private static final String WIDGET = """
+        package com.example;
+        @Marker("widget")
+        public class Widget extends Base {
+          static final int LIMIT = 10;
+          private final java.util.List<String> values = new java.util.ArrayList<>();
+          public int size(final int extra) { return values.size() + extra; }
+          public static class Part {}
+        }
+        """;
+
+    private static final String GADGET = """
+        package com.example;
+        public class Gadget extends Base {}
+        """;
+
+    @Test
+    public void fingerprintIsStableAcrossCompilations() throws Exception {
+        final Map<String, String> first = fingerprint(BASE, WIDGET);
+        final Map<String, String> second = fingerprint(BASE, WIDGET);
+
+        final String fingerprint = first.get("com.example.Widget");
+        assertTrue(fingerprint.matches("[0-9a-f]{32}"), fingerprint);
+        assertEquals(second, first);
+        assertNotEquals(first.get("com.example.Gadget"), fingerprint);
+    }
+
+    @Test
+    public void fingerprintIgnoresImplementationDetails() throws Exception {
+        final String fingerprint = fingerprint(BASE, WIDGET).get("com.example.Widget");
+
+        assertEquals(
+                fingerprint(BASE, WIDGET.replace("values.size() + extra", "extra + values.size()"))
+                        .get("com.example.Widget"),
+                fingerprint);
+        assertEquals(
+                fingerprint(BASE, WIDGET.replace("new java.util.ArrayList<>()", "new java.util.LinkedList<>()"))
+                        .get("com.example.Widget"),
+                fingerprint);
+        assertEquals(
+                fingerprint(BASE.replace("return \"base\"", "return \"other\""), WIDGET)
+                        .get("com.example.Widget"),
+                fingerprint);
+    }
+
+    @Test
+    public void fingerprintChangesWhenDeclarationsChange() throws Exception {
+        final String fingerprint = fingerprint(BASE, WIDGET).get("com.example.Widget");
+
+        // Annotation values
+        assertChanged(BASE, WIDGET.replace("@Marker(\"widget\")", "@Marker(\"gizmo\")"), fingerprint);
+        // Annotation defaults
+        assertChanged(BASE.replace("default \"default\"", "default \"other\""), WIDGET, fingerprint);
+        // Constant values
+        assertChanged(BASE, WIDGET.replace("LIMIT = 10", "LIMIT = 11"), fingerprint);
+        // Member signatures
+        assertChanged(BASE, WIDGET.replace("int size(final int extra)", "long size(final int extra)"), fingerprint);
+        assertChanged(BASE, WIDGET.replace("int extra", "int more").replace("+ extra", "+ more"), fingerprint);
+        assertChanged(BASE, WIDGET.replace("public int size", "protected int size"), fingerprint);
+        assertChanged(BASE, WIDGET.replace("int size(final int extra)", "int size(final int extra) throws Exception"),
+                      fingerprint);
+        // Nested types
+        assertChanged(BASE, WIDGET.replace("public static class Part", "static class Part"), fingerprint);
+        // Supertype chain
+        assertChanged(BASE.replace("protected int count", "protected long count"), WIDGET, fingerprint);
+        assertChanged(BASE.replace("String name();", "String name();\n  default int rank() { return 0; }"),
+                      WIDGET,
+                      fingerprint);
+    }
+
+    @Test
+    public void sharedSuperTypesAreMemoized() throws Exception {
+        final var processor = new FingerprintProcessor(List.of("com.example.Widget", "com.example.Gadget"));
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Base", BASE),
+                        TestUtil.source("com.example.Widget", WIDGET),
+                        TestUtil.source("com.example.Gadget", GADGET)),
+                processor);
+
+        // Widget, Widget.Part, Base, Object and Named are digested for Widget and only Gadget is added for Gadget
+        assertEquals(processor.memoizedTypeCounts(), List.of(5, 6));
+    }
+
+    private static void assertChanged(final String base, final String widget, final String fingerprint)
+            throws Exception {
+        assertNotEquals(fingerprint(base, widget).get("com.example.Widget"), fingerprint);
+    }
+
+    private static Map<String, String> fingerprint(final String base, final String widget) throws Exception {
+        final var processor = new FingerprintProcessor(List.of("com.example.Widget", "com.example.Gadget"));
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Base", base),
+                        TestUtil.source("com.example.Widget", widget),
+                        TestUtil.source("com.example.Gadget", GADGET)),
+                processor);
+        return processor.fingerprints();
+    }
+
+    private static final class FingerprintProcessor extends TestUtil.TestProcessor {
+        private final List<String> _typeNames;
+
+        private final Map<String, String> _fingerprints = new LinkedHashMap<>();
+
+        private final List<Integer> _memoizedTypeCounts = new ArrayList<>();
+
+        FingerprintProcessor(final List<String> typeNames) {
+            _typeNames = typeNames;
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+            if (_fingerprints.isEmpty() && !roundEnv.processingOver()) {
+                final var fingerprints = new Fingerprints();
+                for (final String typeName : _typeNames) {
+                    final TypeElement type =
+                            Objects.requireNonNull(processingEnv.getElementUtils().getTypeElement(typeName));
+                    _fingerprints.put(typeName, fingerprints.fingerprint(type));
+                    _memoizedTypeCounts.add(fingerprints.getMemoizedTypeCount());
+                }
+            }
+            return false;
+        }
+
+        Map<String, String> fingerprints() {
+            return _fingerprints;
+        }
+
+        List<Integer> memoizedTypeCounts() {
+            return _memoizedTypeCounts;
+        }
+    }
+}
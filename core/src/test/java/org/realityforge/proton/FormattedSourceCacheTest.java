@@ -0,0 +1,110 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.testng.annotations.Test;
+
+public final class FormattedSourceCacheTest {
+    @Test
+    public void getReturnsPreviouslyStoredFormattedSource() throws IOException {
+        final Path directory = Files.createTempDirectory("format-cache");
+        try {
+            final var cache = new FormattedSourceCache(directory.resolve("cache"), 10, "formatter@1");
+
+            assertNull(cache.get("class A{}"));
+            cache.put("class A{}", "class A {}\n");
+
+            assertEquals(cache.get("class A{}"), "class A {}\n");
+            assertEquals(cache.getHitCount(), 1);
+            assertEquals(cache.getMissCount(), 1);
+
+            // A new cache instance, as used by a later build, reads the persisted entry
+            final var laterCache = new FormattedSourceCache(directory.resolve("cache"), 10, "formatter@1");
+            assertEquals(laterCache.get("class A{}"), "class A {}\n");
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void entriesAreKeyedByFormatterVersion() throws IOException {
+        final Path directory = Files.createTempDirectory("format-cache");
+        try {
+            final var cache = new FormattedSourceCache(directory, 10, "formatter@1");
+            final var upgradedCache = new FormattedSourceCache(directory, 10, "formatter@2");
+            cache.put("class A{}", "class A {}\n");
+
+            assertNotEquals(cache.key("class A{}"), upgradedCache.key("class A{}"));
+            assertNotEquals(cache.key("class A{}"), cache.key("class B{}"));
+            assertNull(upgradedCache.get("class A{}"));
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void evictRemovesLeastRecentlyUsedEntries() throws IOException {
+        final Path directory = Files.createTempDirectory("format-cache");
+        try {
+            final var cache = new FormattedSourceCache(directory, 2, "formatter@1");
+            cache.put("class A{}", "class A {}\n");
+            cache.put("class B{}", "class B {}\n");
+            setLastModified(directory, cache, "class A{}", 1000L);
+            setLastModified(directory, cache, "class B{}", 2000L);
+            // Reading A marks it as the most recently used entry
+            assertEquals(cache.get("class A{}"), "class A {}\n");
+            cache.put("class C{}", "class C {}\n");
+
+            cache.evict();
+
+            assertTrue(Files.exists(entry(directory, cache, "class A{}")));
+            assertFalse(Files.exists(entry(directory, cache, "class B{}")));
+            assertTrue(Files.exists(entry(directory, cache, "class C{}")));
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void putIgnoresUnwritableCacheDirectory() throws IOException {
+        final Path directory = Files.createTempDirectory("format-cache");
+        try {
+            final Path file = Files.writeString(directory.resolve("file"), "");
+            final var cache = new FormattedSourceCache(file.resolve("cache"), 10, "formatter@1");
+
+            cache.put("class A{}", "class A {}\n");
+
+            assertNull(cache.get("class A{}"));
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    private static void setLastModified(
+            final Path directory, final FormattedSourceCache cache, final String source, final long time)
+            throws IOException {
+        Files.setLastModifiedTime(entry(directory, cache, source), FileTime.fromMillis(time));
+    }
+
+    private static Path entry(final Path directory, final FormattedSourceCache cache, final String source) {
+        return directory.resolve(cache.key(source) + ".java");
+    }
+
+    private static void deleteDir(final Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -67,6 +67,56 @@ public final class GeneratorUtilTest {
         assertTrue(processor.wasValidated());
     }
 
+    @Test
+    public void getOriginatingTypesOmitsDuplicateAndBinaryTypes() throws Exception {
+        final var processor = new OriginatingTypesProcessor();
+
+        TestUtil.compile(TestUtil.source("com.example.Widget", """
+            package com.example;
+            interface Named extends Comparable<Named> {}
+            interface Labelled extends Named {}
+            abstract class Base implements Named, java.io.Serializable {}
+            public abstract class Widget extends Base implements Labelled, Named {}
+            """), processor);
+
+        assertEquals(
+                processor.originatingTypeNames(),
+                List.of("com.example.Widget", "com.example.Base", "com.example.Named", "com.example.Labelled"));
+        assertEquals(processor.influencingTypeNames(), List.of("com.example.Widget", "com.example.Named"));
+    }
+
+    private static final class OriginatingTypesProcessor extends TestUtil.TestProcessor {
+        private List<String> _originatingTypeNames = List.of();
+
+        private List<String> _influencingTypeNames = List.of();
+
+        @Override
+        public boolean process(
+                final Set<? extends TypeElement> annotations,
+                final javax.annotation.processing.RoundEnvironment roundEnv) {
+            if (_originatingTypeNames.isEmpty() && !roundEnv.processingOver()) {
+                final TypeElement widget = processingEnv.getElementUtils().getTypeElement("com.example.Widget");
+                assertNotNull(widget);
+                _originatingTypeNames = names(GeneratorUtil.getOriginatingTypes(processingEnv, widget));
+                _influencingTypeNames = names(GeneratorUtil.getOriginatingTypes(
+                        processingEnv, widget, t -> t.getSimpleName().contentEquals("Named")));
+            }
+            return false;
+        }
+
+        List<String> originatingTypeNames() {
+            return _originatingTypeNames;
+        }
+
+        List<String> influencingTypeNames() {
+            return _influencingTypeNames;
+        }
+
+        private static List<String> names(final List<TypeElement> types) {
+            return types.stream().map(t -> t.getQualifiedName().toString()).collect(Collectors.toList());
+        }
+    }
+
     private static final class GeneratorProcessor extends TestUtil.TestProcessor {
         private boolean _validated;
 
@@ -0,0 +1,31 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.testng.annotations.Test;
+
+public final class GradleIncrementalMetadataTest {
+    @Test
+    public void renderRegistersSortedProcessorsAsDynamic() {
+        assertEquals(
+                GradleIncrementalMetadata.render(List.of("com.example.WidgetProcessor", "com.example.GadgetProcessor")),
+                "com.example.GadgetProcessor,dynamic\ncom.example.WidgetProcessor,dynamic\n");
+        assertEquals(GradleIncrementalMetadata.render(List.of()), "");
+    }
+
+    @Test
+    public void writeCreatesMetadataInOutputDirectory() throws Exception {
+        final Path directory = Files.createTempDirectory("gradle-metadata");
+        try {
+            final Path file = GradleIncrementalMetadata.write(directory, List.of("com.example.WidgetProcessor"));
+
+            assertEquals(file, directory.resolve("META-INF/gradle/incremental.annotation.processors"));
+            assertEquals(Files.readString(file), "com.example.WidgetProcessor,dynamic\n");
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public final class HeapAccountingTest {
+    @Test
+    public void getCurrentThreadAllocatedBytesIncreasesWithAllocations() {
+        final long before = HeapAccounting.getCurrentThreadAllocatedBytes();
+        final byte[] bytes = new byte[64 * 1024];
+        final long after = HeapAccounting.getCurrentThreadAllocatedBytes();
+
+        assertEquals(bytes.length, 64 * 1024);
+        if (HeapAccounting.isAllocationAccountingSupported()) {
+            assertTrue(after - before >= bytes.length, before + " -> " + after);
+        } else {
+            assertEquals(before, -1L);
+            assertEquals(after, -1L);
+        }
+    }
+
+    @Test
+    public void getRetainedHeapBytesIsWithinTheHeap() {
+        final long retained = HeapAccounting.getRetainedHeapBytes();
+
+        assertTrue(retained > 0L);
+        assertTrue(retained <= Runtime.getRuntime().totalMemory(), String.valueOf(retained));
+    }
+}
@@ -98,6 +98,21 @@ public final class JsonUtilTest {
         assertFalse(resource.isDeleted());
     }
 
+    @Test
+    public void writeJsonResourceSkipsGenerationWhenWritesSuppressed() throws Exception {
+        final Element element = proxy(Element.class, (self, method, args) -> unsupported(method));
+        final ProcessingEnvironment processingEnv =
+                proxy(ProcessingEnvironment.class, (self, method, args) -> unsupported(method));
+
+        final boolean previous = ResourceUtil.setWritesSuppressed(true);
+        try {
+            JsonUtil.writeJsonResource(
+                    processingEnv, element, "metadata.json", g -> fail("Generator should not be invoked"));
+        } finally {
+            ResourceUtil.setWritesSuppressed(previous);
+        }
+    }
+
     private static ProcessingEnvironment processingEnvironment(final Filer filer) {
         return proxy(
                 ProcessingEnvironment.class,
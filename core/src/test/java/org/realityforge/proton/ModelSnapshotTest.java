@@ -0,0 +1,149 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import org.jspecify.annotations.Nullable;
+import org.testng.annotations.Test;
+
+public final class ModelSnapshotTest {
+    @Test
+    public void ofDescribesTypeMembersAndAnnotations() throws Exception {
+        final var processor = new SnapshotProcessor();
+
+        TestUtil.compile(TestUtil.source("com.example.Widget", """
+            package com.example;
+            import java.io.IOException;
+            import java.util.List;
+            enum Color { RED, GREEN }
+            @interface Info {
+              String name();
+              int priority() default 3;
+              Class<?> type() default Object.class;
+              Color color() default Color.GREEN;
+              String[] tags() default {};
+            }
+            @interface Wrapper {
+              Info value();
+            }
+            @Info(name = "widget", tags = {"a", "b"})
+            @Wrapper(@Info(name = "inner"))
+            public abstract class Widget<T extends Number> extends Thread implements Comparable<Widget<T>> {
+              public static final int LIMIT = 10;
+              @Deprecated
+              protected List<T> values;
+              public Widget(final String name) {}
+              @Info(name = "size", color = Color.RED)
+              public abstract <X> T convert(final X input, final String... names) throws IOException;
+              public static class Part {}
+            }
+            """), processor);
+
+        final ModelSnapshot.TypeSnapshot widget = Objects.requireNonNull(processor.snapshot());
+        assertEquals(widget.className().canonicalName(), "com.example.Widget");
+        assertEquals(widget.kind(), ElementKind.CLASS);
+        assertEquals(List.copyOf(widget.modifiers()), List.of(Modifier.PUBLIC, Modifier.ABSTRACT));
+        assertEquals(widget.typeVariables().get(0).name(), "T");
+        assertEquals(String.valueOf(widget.superclass()), "java.lang.Thread");
+        assertEquals(widget.interfaces().toString(), "[java.lang.Comparable<com.example.Widget<T>>]");
+
+        final var info = Objects.requireNonNull(widget.findAnnotation("com.example.Info"));
+        assertEquals(List.copyOf(info.values().keySet()), List.of("name", "priority", "type", "color", "tags"));
+        assertEquals(info.getValue("name"), "widget");
+        assertEquals(info.getValue("priority"), 3);
+        assertEquals(info.getValue("type").toString(), "java.lang.Object");
+        assertEquals(info.getValue("color"), "GREEN");
+        assertEquals(info.getValue("tags"), List.of("a", "b"));
+        final var wrapper = Objects.requireNonNull(widget.findAnnotation("com.example.Wrapper"));
+        final var wrapped = (ModelSnapshot.AnnotationSnapshot) wrapper.getValue("value");
+        assertEquals(wrapped.getValue("name"), "inner");
+        assertNull(widget.findAnnotation("com.example.Missing"));
+
+        assertEquals(
+                widget.fields().stream().map(ModelSnapshot.FieldSnapshot::name).collect(Collectors.toList()),
+                List.of("LIMIT", "values"));
+        final ModelSnapshot.FieldSnapshot limit = widget.fields().get(0);
+        assertEquals(limit.constantValue(), 10);
+        assertEquals(limit.type().toString(), "int");
+        final ModelSnapshot.FieldSnapshot values = widget.fields().get(1);
+        assertNull(values.constantValue());
+        assertEquals(values.type().toString(), "java.util.List<T>");
+        assertNotNull(values.findAnnotation("java.lang.Deprecated"));
+
+        assertEquals(
+                widget.methods().stream().map(ModelSnapshot.MethodSnapshot::kind).collect(Collectors.toList()),
+                List.of(ElementKind.CONSTRUCTOR, ElementKind.METHOD));
+        final ModelSnapshot.MethodSnapshot convert = widget.methods().get(1);
+        assertEquals(convert.name(), "convert");
+        assertEquals(convert.returnType().toString(), "T");
+        assertEquals(convert.typeVariables().get(0).name(), "X");
+        assertEquals(
+                convert.parameters().stream().map(ModelSnapshot.ParameterSnapshot::name).collect(Collectors.toList()),
+                List.of("input", "names"));
+        assertEquals(convert.parameters().get(1).type().toString(), "java.lang.String[]");
+        assertTrue(convert.varArgs());
+        assertEquals(convert.thrownTypes().toString(), "[java.io.IOException]");
+        assertEquals(Objects.requireNonNull(convert.findAnnotation("com.example.Info")).getValue("color"), "RED");
+        assertFalse(widget.methods().get(0).varArgs());
+
+        assertEquals(widget.nestedTypes().size(), 1);
+        assertEquals(widget.nestedTypes().get(0).className().canonicalName(), "com.example.Widget.Part");
+        assertEquals(String.valueOf(widget.nestedTypes().get(0).superclass()), "java.lang.Object");
+    }
+
+    @Test
+    public void snapshotsAreImmutable() throws Exception {
+        final var processor = new SnapshotProcessor();
+
+        TestUtil.compile(TestUtil.source("com.example.Widget", """
+            package com.example;
+            @Deprecated
+            public interface Widget {
+              void run();
+            }
+            """), processor);
+
+        final ModelSnapshot.TypeSnapshot widget = Objects.requireNonNull(processor.snapshot());
+        assertNull(widget.superclass());
+        assertUnsupported(() -> widget.modifiers().add(Modifier.FINAL));
+        assertUnsupported(() -> widget.methods().clear());
+        assertUnsupported(() -> widget.annotations().get(0).values().put("since", "1"));
+    }
+
+    private static void assertUnsupported(final Runnable runnable) {
+        try {
+            runnable.run();
+            throw new AssertionError("Expected UnsupportedOperationException");
+        } catch (final UnsupportedOperationException ignored) {
+            // Expected
+        }
+    }
+
+    private static final class SnapshotProcessor extends TestUtil.TestProcessor {
+        private ModelSnapshot.@Nullable TypeSnapshot _snapshot;
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+            if (null == _snapshot && !roundEnv.processingOver()) {
+                _snapshot = ModelSnapshot.of(
+                        Objects.requireNonNull(processingEnv.getElementUtils().getTypeElement("com.example.Widget")));
+            }
+            return false;
+        }
+
+        ModelSnapshot.@Nullable TypeSnapshot snapshot() {
+            return _snapshot;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.testng.annotations.Test;
+
+public final class OutputCacheTest {
+    @Test
+    public void getReturnsPreviouslyStoredTypes() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory.resolve("cache"), 10);
+            final List<OutputCache.CachedType> types = List.of(
+                    new OutputCache.CachedType(
+                            "com.example.Widget_Generated", List.of("com.example.Widget"), "class \u00B5 {}\n"),
+                    new OutputCache.CachedType("com.example.Other_Generated", List.of(), "class Other {}\n"));
+
+            assertNull(cache.get("Generate\0com.example.Widget", "fingerprint@1"));
+            cache.put("Generate\0com.example.Widget", "fingerprint@1", types);
+
+            assertEquals(cache.get("Generate\0com.example.Widget", "fingerprint@1"), types);
+            assertEquals(cache.getHitCount(), 1);
+            assertEquals(cache.getMissCount(), 1);
+
+            // A new cache instance, as used by a later build, reads the persisted entry
+            final var laterCache = new OutputCache(directory.resolve("cache"), 10);
+            assertEquals(laterCache.get("Generate\0com.example.Widget", "fingerprint@1"), types);
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void getReturnsNullWhenFingerprintChanged() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 10);
+            cache.put("Generate\0com.example.Widget", "fingerprint@1", List.of());
+
+            assertNull(cache.get("Generate\0com.example.Widget", "fingerprint@2"));
+            assertNull(cache.get("Other\0com.example.Widget", "fingerprint@1"));
+            assertEquals(cache.get("Generate\0com.example.Widget", "fingerprint@1"), List.of());
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void corruptEntriesAreMisses() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 10);
+            cache.put("Generate\0com.example.Widget", "fingerprint@1", List.of());
+            try (Stream<Path> paths = Files.list(directory)) {
+                for (final Path path : paths.toList()) {
+                    Files.write(path, new byte[] {0, 0, 0, 1, 0});
+                }
+            }
+
+            assertNull(cache.get("Generate\0com.example.Widget", "fingerprint@1"));
+            assertEquals(cache.getMissCount(), 1);
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void entriesWithLengthsBeyondTheEntrySizeAreMisses() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 10);
+            final List<OutputCache.CachedType> types =
+                    List.of(new OutputCache.CachedType("com.example.Widget_Generated", List.of(), "class W {}\n"));
+            cache.put("Generate\0com.example.Widget", "fingerprint@1", types);
+            final Path entry;
+            try (Stream<Path> paths = Files.list(directory)) {
+                entry = paths.toList().get(0);
+            }
+            final byte[] content = Files.readAllBytes(entry);
+            final int sourceLengthOffset = content.length - "class W {}\n".length() - 4;
+
+            for (final int length : new int[] {Integer.MAX_VALUE, -1}) {
+                ByteBuffer.wrap(content).putInt(sourceLengthOffset, length);
+                Files.write(entry, content);
+
+                assertNull(cache.get("Generate\0com.example.Widget", "fingerprint@1"));
+            }
+            assertEquals(cache.getMissCount(), 2);
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void getReturnsTypesWithStringsLongerThanSixtyFourKilobytes() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 10);
+            final String fingerprint = "f".repeat(70_000);
+            final String typeName = "com.example." + "W".repeat(70_000);
+            final List<OutputCache.CachedType> types =
+                    List.of(new OutputCache.CachedType(typeName, List.of(typeName), "class W {}\n"));
+            cache.put("Generate\0com.example.Widget", fingerprint, types);
+
+            assertEquals(cache.get("Generate\0com.example.Widget", fingerprint), types);
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void evictRemovesLeastRecentlyUsedEntries() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 2);
+            cache.put("Generate\0com.example.A", "fingerprint@1", List.of());
+            cache.put("Generate\0com.example.B", "fingerprint@1", List.of());
+            setLastModified(directory, cache, "Generate\0com.example.A", 1000L);
+            setLastModified(directory, cache, "Generate\0com.example.B", 2000L);
+            // Reading A marks it as the most recently used entry
+            assertEquals(cache.get("Generate\0com.example.A", "fingerprint@1"), List.of());
+            cache.put("Generate\0com.example.C", "fingerprint@1", List.of());
+
+            cache.evict();
+
+            assertTrue(Files.exists(entry(directory, cache, "Generate\0com.example.A")));
+            assertFalse(Files.exists(entry(directory, cache, "Generate\0com.example.B")));
+            assertTrue(Files.exists(entry(directory, cache, "Generate\0com.example.C")));
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void putEvictsOnceTheMaximumNumberOfEntriesHaveBeenWritten() throws IOException {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final var cache = new OutputCache(directory, 2);
+            for (int i = 0; i < 6; i++) {
+                cache.put("Generate\0com.example.Type" + i, "fingerprint@1", List.of());
+            }
+
+            try (Stream<Path> paths = Files.list(directory)) {
+                assertEquals(paths.count(), 2L);
+            }
+        } finally {
+            deleteDir(directory);
+        }
+    }
+
+    private static void setLastModified(
+            final Path directory, final OutputCache cache, final String entryName, final long time)
+            throws IOException {
+        Files.setLastModifiedTime(entry(directory, cache, entryName), FileTime.fromMillis(time));
+    }
+
+    private static Path entry(final Path directory, final OutputCache cache, final String entryName) {
+        return directory.resolve(cache.key(entryName) + ".entry");
+    }
+
+    private static void deleteDir(final Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
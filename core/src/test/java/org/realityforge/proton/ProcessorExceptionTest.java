@@ -22,6 +22,16 @@ public final class ProcessorExceptionTest {
         assertNull(exception.getAnnotationValue());
     }
 
+    @Test
+    public void stackTraceIsNotCapturedByDefault() {
+        final Element element = TestUtil.proxy(Element.class, (self, method, args) -> TestUtil.unsupported(method));
+
+        final var exception = new ProcessorException("Bad element", element);
+
+        assertEquals(exception.getStackTrace().length, 0);
+        assertNull(exception.getCause());
+    }
+
     @Test
     public void constructorStoresAnnotation() {
         final Element element = TestUtil.proxy(Element.class, (self, method, args) -> TestUtil.unsupported(method));
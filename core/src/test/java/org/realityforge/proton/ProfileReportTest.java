@@ -0,0 +1,138 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import org.testng.annotations.Test;
+
+public final class ProfileReportTest {
+    @Test
+    public void recordsDurationsPerElementAndRound() {
+        final var report = new ProfileReport();
+        final TypeElement alpha = typeElement("com.example.Alpha");
+        final TypeElement beta = typeElement("com.example.Beta");
+
+        report.enterRound(roundEnvironment());
+        report.recordExtractDeferred(5);
+        report.recordValidation(alpha, 10, false);
+        report.recordValidation(beta, 20, true);
+        report.recordAction(alpha, 100);
+        report.recordEmission(alpha, 30, false);
+        report.recordGeneratedType(alpha, "class Alpha_Generated {}");
+        final RoundEnvironment secondRound = roundEnvironment();
+        report.enterRound(secondRound);
+        report.enterRound(secondRound);
+        report.recordValidation(beta, 20, false);
+        report.recordAction(beta, 500);
+        report.recordEmission(beta, 60, true);
+        report.recordGeneratedType(null, "class Orphan {}");
+
+        final List<ProfileReport.RoundProfile> rounds = report.getRounds();
+        assertEquals(rounds.size(), 2);
+        assertEquals(rounds.get(0).getNumber(), 1);
+        assertEquals(rounds.get(0).getProcessedElementCount(), 1);
+        assertEquals(rounds.get(0).getDeferralCount(), 1);
+        assertEquals(rounds.get(0).getGeneratedTypeCount(), 1);
+        assertEquals(rounds.get(1).getNumber(), 2);
+        assertEquals(rounds.get(1).getDeferralCount(), 0);
+        assertEquals(rounds.get(1).getGeneratedTypeCount(), 1);
+
+        final List<ProfileReport.ElementProfile> elements = report.getSlowestElements(10);
+        assertEquals(elements.size(), 2);
+        final ProfileReport.ElementProfile slowest = elements.get(0);
+        assertEquals(slowest.getName(), "com.example.Beta");
+        assertEquals(slowest.getTotalNanos(), 540);
+        assertEquals(slowest.getDeferralCount(), 1);
+        assertEquals(slowest.getGeneratedTypeCount(), 0);
+        final ProfileReport.ElementProfile fastest = elements.get(1);
+        assertEquals(fastest.getTotalNanos(), 140);
+        assertEquals(fastest.getGeneratedTypeCount(), 1);
+        assertEquals(fastest.getGeneratedBytes(), 24);
+        assertEquals(report.getSlowestElements(1).size(), 1);
+    }
+
+    @Test
+    public void recordRetainedHeapTracksThePeakOfEachRound() {
+        final var report = new ProfileReport();
+
+        report.enterRound(roundEnvironment());
+        report.recordRetainedHeap(300);
+        report.recordRetainedHeap(500);
+        report.recordRetainedHeap(400);
+        report.enterRound(roundEnvironment());
+        report.recordRetainedHeap(200);
+
+        final List<ProfileReport.RoundProfile> rounds = report.getRounds();
+        assertEquals(rounds.get(0).getPeakRetainedHeapBytes(), 500);
+        assertEquals(rounds.get(1).getPeakRetainedHeapBytes(), 200);
+    }
+
+    @Test
+    public void membersAreDescribedByTheirEnclosingType() {
+        final var report = new ProfileReport();
+        final TypeElement type = typeElement("com.example.Alpha");
+        final ExecutableElement method = TestUtil.proxy(ExecutableElement.class, (self, m, args) -> {
+            if ("getEnclosingElement".equals(m.getName())) {
+                return type;
+            }
+            return TestUtil.unsupported(m);
+        });
+
+        report.recordAction(method, 1);
+
+        assertEquals(report.getRounds().size(), 1);
+        assertEquals(report.getSlowestElements(1).get(0).getName(), "com.example.Alpha.ExecutableElementProxy");
+    }
+
+    @Test
+    public void writeDescribesRoundsAndSlowestElements() {
+        final var report = new ProfileReport();
+        report.enterRound(roundEnvironment());
+        report.recordAction(typeElement("com.example.Alpha"), 100);
+        report.recordAction(typeElement("com.example.Beta"), 200);
+        report.recordRetainedHeap(4096);
+        final var stopWatch = new StopWatch("Generate");
+
+        final String json =
+                JsonUtil.renderJson(g -> report.write(g, "com.example.MyProcessor", 1, List.of(stopWatch)));
+
+        assertTrue(json.contains("\"processor\": \"com.example.MyProcessor\""), json);
+        assertTrue(json.contains("\"elementCount\": 2"), json);
+        assertTrue(json.contains("\"actionNanos\": 300"), json);
+        assertTrue(json.contains("\"peakRetainedHeapBytes\": 4096"), json);
+        assertTrue(json.contains("\"name\": \"Generate\""), json);
+        assertTrue(json.contains("\"allocatedBytes\": " + stopWatch.getTotalAllocatedBytes()), json);
+        assertTrue(json.contains("\"element\": \"com.example.Beta\""), json);
+        assertFalse(json.contains("com.example.Alpha"), json);
+    }
+
+    @Test
+    public void utf8LengthCountsEncodedBytes() {
+        assertEquals(ProfileReport.utf8Length(""), 0);
+        assertEquals(ProfileReport.utf8Length("abc"), 3);
+        assertEquals(ProfileReport.utf8Length("\u00e9"), 2);
+        assertEquals(ProfileReport.utf8Length("\u20ac"), 3);
+        assertEquals(ProfileReport.utf8Length("\uD83D\uDE00"), 4);
+    }
+
+    private static TypeElement typeElement(final String qualifiedName) {
+        return TestUtil.proxy(TypeElement.class, (self, method, args) -> {
+            if ("getKind".equals(method.getName())) {
+                return ElementKind.CLASS;
+            } else if ("getQualifiedName".equals(method.getName())) {
+                return TestUtil.name(qualifiedName);
+            }
+            return TestUtil.unsupported(method);
+        });
+    }
+
+    private static RoundEnvironment roundEnvironment() {
+        return TestUtil.proxy(RoundEnvironment.class, (self, method, args) -> TestUtil.unsupported(method));
+    }
+}
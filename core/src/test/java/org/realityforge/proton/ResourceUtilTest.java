@@ -33,6 +33,22 @@ public final class ResourceUtilTest {
         assertFalse(resource.isDeleted());
     }
 
+    @Test
+    public void writeResourceDiscardsContentWhenWritesSuppressed() throws Exception {
+        final Element element = TestUtil.proxy(Element.class, (self, method, args) -> TestUtil.unsupported(method));
+        final ProcessingEnvironment processingEnv =
+                TestUtil.proxy(ProcessingEnvironment.class, (self, method, args) -> TestUtil.unsupported(method));
+
+        final boolean previous = ResourceUtil.setWritesSuppressed(true);
+        try {
+            assertTrue(ResourceUtil.areWritesSuppressed());
+            ResourceUtil.writeResource(processingEnv, "metadata.txt", "content", element);
+        } finally {
+            ResourceUtil.setWritesSuppressed(previous);
+        }
+        assertFalse(ResourceUtil.areWritesSuppressed());
+    }
+
     @Test
     public void writeResourceDeletesResourceWhenWriteFails() {
         final var failure = new IOException("Write failed");
@@ -0,0 +1,105 @@
+package org.realityforge.proton;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.Test;
+
+public final class SourceFormatterTest {
+    @Test
+    public void getReturnsFormatterSharedByClassLoader() throws Exception {
+        final ClassLoader classLoader = new ClassLoader(SourceFormatterTest.class.getClassLoader()) {};
+
+        final SourceFormatter formatter = SourceFormatter.get(classLoader);
+
+        assertEquals(SourceFormatter.get(classLoader), formatter);
+        assertTrue(formatter.getVersion().startsWith(SourceFormatter.ORIGINAL_FORMATTER_CLASSNAME + "@"));
+    }
+
+    @Test
+    public void getReturnsFormatterCreatedByPrewarm() throws Exception {
+        final ClassLoader classLoader = new ClassLoader(SourceFormatterTest.class.getClassLoader()) {};
+
+        SourceFormatter.prewarm(classLoader);
+        final SourceFormatter formatter = SourceFormatter.get(classLoader);
+
+        assertEquals(SourceFormatter.get(classLoader), formatter);
+    }
+
+    @Test
+    public void getFailsWhenFormatterClassesAreMissing() {
+        final ClassLoader classLoader = new ClassLoader(null) {};
+
+        final ClassNotFoundException exception =
+                expectThrows(ClassNotFoundException.class, () -> SourceFormatter.get(classLoader));
+        assertTrue(exception.getMessage().contains(SourceFormatter.getVendorFormatterClassname()));
+
+        // Failures are not retained so a later request attempts to create the formatter again
+        expectThrows(ClassNotFoundException.class, () -> SourceFormatter.get(classLoader));
+    }
+
+    @Test
+    public void formatterDoesNotRetainTheClassLoaderThatLoadedIt() throws Exception {
+        final WeakReference<ClassLoader> reference = formatWithIsolatedClassLoader();
+
+        for (int i = 0; i < 50 && null != reference.get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+    }
+
+    @Test
+    public void formatterLoadedByParentClassLoaderDoesNotRetainTheProcessorClassLoader() throws Exception {
+        final WeakReference<ClassLoader> reference = formatWithFormatterFromParentClassLoader();
+
+        for (int i = 0; i < 50 && null != reference.get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(reference.get());
+    }
+
+    private static WeakReference<ClassLoader> formatWithFormatterFromParentClassLoader() throws Exception {
+        // Proton is loaded by an isolated classloader while the formatter is loaded by the long-lived test classloader
+        try (var classLoader = new URLClassLoader(classPath(), ClassLoader.getPlatformClassLoader())) {
+            final Class<?> type = classLoader.loadClass(SourceFormatter.class.getName());
+            final Method get = type.getDeclaredMethod("get", ClassLoader.class);
+            get.setAccessible(true);
+            final Object formatter = get.invoke(null, SourceFormatterTest.class.getClassLoader());
+            final Method format = type.getDeclaredMethod("format", String.class);
+            format.setAccessible(true);
+            assertSame(format.invoke(formatter, "class A {}").getClass(), String.class);
+            return new WeakReference<>(classLoader);
+        }
+    }
+
+    private static WeakReference<ClassLoader> formatWithIsolatedClassLoader() throws Exception {
+        try (var classLoader = new URLClassLoader(classPath(), ClassLoader.getPlatformClassLoader())) {
+            final SourceFormatter formatter = SourceFormatter.get(classLoader);
+            assertSame(formatter.format("class A {}").getClass(), String.class);
+            assertEquals(SourceFormatter.get(classLoader), formatter);
+            return new WeakReference<>(classLoader);
+        }
+    }
+
+    private static URL[] classPath() throws Exception {
+        final List<URL> urls = new ArrayList<>();
+        for (final String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
@@ -2,20 +2,53 @@ package org.realityforge.proton;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
+import com.palantir.javapoet.JavaFile;
+import com.palantir.javapoet.TypeSpec;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.FilerException;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.NoType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
 import javax.tools.Diagnostic;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileObject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.jspecify.annotations.Nullable;
 import org.testng.annotations.Test;
 
@@ -26,12 +59,39 @@ public final class StandardProcessorTest {
         final Set<String> options = processor.getSupportedOptions();
 
         assertTrue(options.contains("test.verbose_out_of_round.errors"));
+        assertTrue(options.contains("test.verbose_out_of_round.max_chars"));
         assertTrue(options.contains("test.defer.errors"));
         assertTrue(options.contains("test.defer.unresolved"));
+        assertTrue(options.contains("test.defer.report_stalled"));
         assertTrue(options.contains("test.debug"));
+        assertTrue(options.contains("test.debug.log"));
+        assertTrue(options.contains("test.diagnostics.aggregate"));
+        assertTrue(options.contains("test.diagnostics.max_repeats"));
         assertTrue(options.contains("test.profile"));
+        assertTrue(options.contains("test.profile.report"));
+        assertTrue(options.contains("test.profile.top_n"));
         assertTrue(options.contains("test.warnings_as_errors"));
         assertTrue(options.contains("test.format_generated_source"));
+        assertTrue(options.contains("test.emit.threads"));
+        assertTrue(options.contains("test.format_cache.dir"));
+        assertTrue(options.contains("test.format_cache.max_entries"));
+        assertTrue(options.contains("test.dependency_order"));
+        assertTrue(options.contains("test.analysis_only"));
+        assertTrue(options.contains("test.output_cache.dir"));
+        assertTrue(options.contains("test.output_cache.max_entries"));
+        assertFalse(options.contains("org.gradle.annotation.processing.isolating"));
+        assertFalse(options.contains("org.gradle.annotation.processing.aggregating"));
+    }
+
+    @Test
+    public void getSupportedOptionsDeclaresIncrementalCategoryToGradle() {
+        final var isolating = new Processor(IncrementalCategory.ISOLATING);
+        final var aggregating = new Processor(IncrementalCategory.AGGREGATING);
+
+        assertTrue(isolating.getSupportedOptions().contains("org.gradle.annotation.processing.isolating"));
+        assertFalse(isolating.getSupportedOptions().contains("org.gradle.annotation.processing.aggregating"));
+        assertTrue(aggregating.getSupportedOptions().contains("org.gradle.annotation.processing.aggregating"));
+        assertFalse(aggregating.getSupportedOptions().contains("org.gradle.annotation.processing.isolating"));
     }
 
     @Test
@@ -41,10 +101,14 @@ public final class StandardProcessorTest {
         processor.init(processingEnvironment(Map.of(), new CapturingMessager()));
 
         assertTrue(processor.shouldDeferUnresolvedValue());
+        assertFalse(processor.shouldReportStalledDeferralsValue());
+        assertFalse(processor.shouldOrderByDependenciesValue());
         assertFalse(processor.isDebugEnabledValue());
         assertFalse(processor.isProfileEnabledValue());
         assertFalse(processor.isWarningsAsErrorsEnabledValue());
         assertEquals(processor.warningKindValue(), Diagnostic.Kind.WARNING);
+        assertFalse(processor.shouldCacheOutputValue(
+                TestUtil.proxy(TypeElement.class, (self, method, args) -> TestUtil.unsupported(method))));
     }
 
     @Test
@@ -55,6 +119,10 @@ public final class StandardProcessorTest {
                 Map.of(
                         "test.defer.unresolved",
                         "false",
+                        "test.defer.report_stalled",
+                        "true",
+                        "test.dependency_order",
+                        "true",
                         "test.debug",
                         "true",
                         "test.profile",
@@ -68,6 +136,8 @@ public final class StandardProcessorTest {
                 new CapturingMessager()));
 
         assertFalse(processor.shouldDeferUnresolvedValue());
+        assertTrue(processor.shouldReportStalledDeferralsValue());
+        assertTrue(processor.shouldOrderByDependenciesValue());
         assertTrue(processor.isDebugEnabledValue());
         assertTrue(processor.isProfileEnabledValue());
         assertTrue(processor.isWarningsAsErrorsEnabledValue());
@@ -75,6 +145,8 @@ public final class StandardProcessorTest {
         assertTrue(processor.readBooleanOptionValue("custom", false));
         assertFalse(processor.readBooleanOptionValue("false_value", true));
         assertTrue(processor.readBooleanOptionValue("missing", true));
+        assertEquals(processor.readStringOptionValue("custom"), "true");
+        assertNull(processor.readStringOptionValue("missing"));
     }
 
     @Test
@@ -96,6 +168,1158 @@ public final class StandardProcessorTest {
         assertEquals(messager.messages().get(1).element(), element);
     }
 
+    @Test
+    public void aggregatedDiagnosticsAreDeduplicatedAndFlushedAtTheEndOfTheRound() {
+        final var messager = new CapturingMessager();
+        final var processor = new Processor();
+        final List<Element> elements = new ArrayList<>();
+        final PackageElement packageElement = packageElement("com.example");
+        for (int i = 0; i < 4; i++) {
+            elements.add(typeElement("com.example.Type" + i, packageElement));
+        }
+        final RoundEnvironment env = TestUtil.proxy(RoundEnvironment.class, (self, method, args) -> {
+            if ("processingOver".equals(method.getName())) {
+                return false;
+            }
+            return TestUtil.unsupported(method);
+        });
+
+        processor.init(processingEnvironment(
+                Map.of("test.diagnostics.aggregate", "true", "test.diagnostics.max_repeats", "2"), messager));
+        processor.warningMessage("Repeated warning", elements.get(0));
+        processor.warningMessage("Repeated warning", elements.get(0));
+        processor.warningMessage("Other warning", elements.get(0));
+        for (final Element element : elements) {
+            processor.warningMessage("Repeated warning", element);
+        }
+
+        assertTrue(messager.messages().isEmpty());
+
+        processor.endRound(env);
+
+        assertEquals(messager.messages().size(), 4);
+        assertEquals(messager.messages().get(0).message(), "Repeated warning");
+        assertEquals(messager.messages().get(0).element(), elements.get(0));
+        assertEquals(messager.messages().get(1).message(), "Other warning");
+        assertEquals(messager.messages().get(2).message(), "Repeated warning");
+        assertEquals(messager.messages().get(2).element(), elements.get(1));
+        assertEquals(messager.messages().get(3).kind(), Diagnostic.Kind.WARNING);
+        assertEquals(
+                messager.messages().get(3).message(),
+                "Suppressed 2 further diagnostics with the message: Repeated warning");
+        assertEquals(messager.messages().get(3).element(), elements.get(0));
+
+        // Diagnostics already reported in an earlier round are discarded
+        processor.warningMessage("Repeated warning", elements.get(0));
+        processor.endRound(env);
+
+        assertEquals(messager.messages().size(), 4);
+    }
+
+    @Test
+    public void aggregatedDiagnosticsDoNotDelayErrors() {
+        final var messager = new CapturingMessager();
+        final var processor = new Processor();
+        final TypeElement element = typeElement("com.example.Type", packageElement("com.example"));
+        final RoundEnvironment env = TestUtil.proxy(RoundEnvironment.class, (self, method, args) -> {
+            if ("processingOver".equals(method.getName()) || "errorRaised".equals(method.getName())) {
+                return false;
+            }
+            return TestUtil.unsupported(method);
+        });
+
+        processor.init(processingEnvironment(
+                Map.of("test.diagnostics.aggregate", "true", "test.defer.errors", "false"), messager));
+        processor.warningMessage("Delayed warning", element);
+        processor.errorMessage(env, "Immediate error", element);
+
+        assertEquals(messager.messages().size(), 1);
+        assertEquals(messager.messages().get(0).kind(), Diagnostic.Kind.ERROR);
+        assertEquals(messager.messages().get(0).message(), "Immediate error");
+
+        processor.endRound(env);
+
+        assertEquals(messager.messages().size(), 2);
+        assertEquals(messager.messages().get(1).message(), "Delayed warning");
+    }
+
+    @Test
+    public void outOfRoundErrorsRenderEachLocationOnceAndLimitTheRenderingOfEachElement() {
+        final var messager = new CapturingMessager();
+        final var processor = new Processor();
+        final List<Element> renderedElements = new ArrayList<>();
+        final Elements elements = TestUtil.proxy(Elements.class, (self, method, args) -> {
+            if ("printElements".equals(method.getName())) {
+                final Writer writer = (Writer) args[0];
+                for (final Element element : (Element[]) args[1]) {
+                    renderedElements.add(element);
+                    writer.write("public interface Base {\n  void run();\n}\n");
+                }
+                return null;
+            }
+            return TestUtil.unsupported(method);
+        });
+        final ProcessingEnvironment processingEnv = TestUtil.proxy(ProcessingEnvironment.class, (self, method, a) -> {
+            if ("getOptions".equals(method.getName())) {
+                return Map.of("test.verbose_out_of_round.max_chars", "24");
+            } else if ("getMessager".equals(method.getName())) {
+                return messager;
+            } else if ("getElementUtils".equals(method.getName())) {
+                return elements;
+            }
+            return TestUtil.unsupported(method);
+        });
+        final PackageElement packageElement = TestUtil.proxy(PackageElement.class, (self, method, args) -> {
+            if ("getKind".equals(method.getName())) {
+                return ElementKind.PACKAGE;
+            }
+            return TestUtil.unsupported(method);
+        });
+        final TypeElement base = TestUtil.proxy(TypeElement.class, (self, method, args) -> {
+            if ("getKind".equals(method.getName())) {
+                return ElementKind.INTERFACE;
+            } else if ("getEnclosingElement".equals(method.getName())) {
+                return packageElement;
+            } else if ("getQualifiedName".equals(method.getName())) {
+                return TestUtil.name("com.example.Base");
+            }
+            return TestUtil.unsupported(method);
+        });
+        final RoundEnvironment env = TestUtil.proxy(RoundEnvironment.class, (self, method, args) -> {
+            if ("getRootElements".equals(method.getName())) {
+                return Set.of();
+            } else if ("errorRaised".equals(method.getName()) || "processingOver".equals(method.getName())) {
+                return false;
+            }
+            return TestUtil.unsupported(method);
+        });
+
+        processor.init(processingEnv);
+        for (final String name : List.of("Alpha", "Beta", "Alpha")) {
+            final Element element = TestUtil.proxy(TypeElement.class, (self, method, args) -> {
+                if ("getSimpleName".equals(method.getName())) {
+                    return TestUtil.name(name);
+                } else if ("getQualifiedName".equals(method.getName())) {
+                    return TestUtil.name("com.example." + name);
+                }
+                return TestUtil.unsupported(method);
+            });
+            processor.performActionValue(env, element, e -> {
+                throw new ProcessorException("Base must not be an interface", base);
+            });
+        }
+
+        assertEquals(renderedElements, List.of(base));
+        assertEquals(messager.messages().size(), 6);
+        final String message = messager.messages().get(2).message();
+        assertTrue(message.startsWith("An error was generated processing the element Beta "), message);
+        assertTrue(
+                message.endsWith("The error occurred at com.example.Base and may look like:\n"
+                        + "public interface Base {\n\n... (16 more characters omitted)\n"),
+                message);
+        assertEquals(messager.messages().get(3).message(), "Base must not be an interface");
+        assertEquals(messager.messages().get(3).element(), base);
+        // The rendering already reported for Alpha exhausted its limit
+        assertTrue(
+                messager.messages().get(4).message().endsWith("may look like:\n\n... (40 more characters omitted)\n"),
+                messager.messages().get(4).message());
+    }
+
+    @Test
+    public void readIntOptionParsesValuesAndWarnsOnInvalidValues() {
+        final var messager = new CapturingMessager();
+        final var processor = new Processor();
+
+        processor.init(processingEnvironment(Map.of("test.count", " 4 ", "test.bad", "four"), messager));
+
+        assertEquals(processor.readIntOptionValue("count", 1), 4);
+        assertEquals(processor.readIntOptionValue("missing", 7), 7);
+        assertTrue(messager.messages().isEmpty());
+        assertEquals(processor.readIntOptionValue("bad", 3), 3);
+        assertEquals(messager.messages().size(), 1);
+        assertEquals(messager.messages().get(0).kind(), Diagnostic.Kind.WARNING);
+        assertEquals(
+                messager.messages().get(0).message(),
+                "Ignoring invalid value 'four' for option test.bad as it is not an integer. Using the default value 3.");
+    }
+
+    @Test
+    public void emitThreadsWarnsOnNegativeValues() {
+        final var messager = new CapturingMessager();
+
+        new Processor().init(processingEnvironment(Map.of("test.emit.threads", "0"), messager));
+        assertTrue(messager.messages().isEmpty());
+
+        new Processor().init(processingEnvironment(Map.of("test.emit.threads", "-2"), messager));
+        assertEquals(messager.messages().size(), 1);
+        assertEquals(messager.messages().get(0).kind(), Diagnostic.Kind.WARNING);
+        assertEquals(
+                messager.messages().get(0).message(),
+                "Ignoring invalid value '-2' for option test.emit.threads as it is negative. Use 0 to use one thread "
+                        + "per available processor. Using the default value 1.");
+    }
+
+    @Test
+    public void emitThreadsWritesAllGeneratedTypes() throws Exception {
+        final var singleThreadedProcessor = new GeneratingProcessor();
+        TestUtil.compile(generatingSources(), singleThreadedProcessor, List.of("test.emit.threads=1"));
+        final var processor = new GeneratingProcessor();
+
+        TestUtil.compile(generatingSources(), processor, List.of("test.emit.threads=3"));
+
+        // Formatting is enabled so the types are rendered and formatted by the workers
+        assertFalse(processor.writtenSources().isEmpty());
+        assertEquals(processor.writtenSources(), singleThreadedProcessor.writtenSources());
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+    }
+
+    @Test
+    public void queuedEmissionWritesGeneratedTypesAtEndOfRound() throws Exception {
+        final var processor = new GeneratingProcessor(true);
+
+        TestUtil.compile(generatingSources(), processor, List.of("test.format_generated_source=false"));
+
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+    }
+
+    @Test
+    public void queuedTypesAreWrittenAtEndOfRoundWhenNotEmittedByTheProcessor() throws Exception {
+        final var processor = new GeneratingProcessor(true, false, false);
+
+        TestUtil.compile(generatingSources(), processor, List.of("test.format_generated_source=false"));
+
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+    }
+
+    @Test
+    public void processTypeSnapshotsGeneratesTypesOffTheCompilerThread() throws Exception {
+        final var processor = new SnapshotGeneratingProcessor(null);
+
+        TestUtil.compile(generatingSources(), processor, List.of("test.format_generated_source=false"));
+
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+        assertEquals(processor.snapshotTypeNames(), Set.of("Alpha", "Beta", "Gamma"));
+        assertFalse(processor.generatorThreads().contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void processTypeSnapshotsReportsFailuresAgainstTheElement() throws Exception {
+        final var processor = new SnapshotGeneratingProcessor("Beta");
+
+        final TestUtil.CompilationResult result = TestUtil.compileWithErrors(
+                generatingSources(), processor, List.of("test.format_generated_source=false"));
+
+        // The failure is reported as a warning while errors are deferred and compilation fails at the end
+        final List<String> messages =
+                result.diagnosticsList().stream().map(d -> d.getMessage(null)).toList();
+        assertTrue(
+                messages.stream()
+                        .anyMatch(m -> m.contains("There was an unexpected error") && m.contains("Beta failed")),
+                result.diagnostics());
+        assertEquals(
+                processor.generatedTypeNames(), Set.of("com.example.Alpha_Generated", "com.example.Gamma_Generated"));
+    }
+
+    @Test
+    public void deferredTypesAreProcessedWhenTheTypesTheyReferenceAreGenerated() throws Exception {
+        final var processor = new GeneratingProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {}
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {
+                              private Alpha_Generated _alpha;
+                            }
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            @Generate
+                            public class Gamma {
+                              private Beta_Generated _beta;
+                            }
+                            """)),
+                processor,
+                List.of("test.format_generated_source=false"));
+
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+    }
+
+    @Test
+    public void typesReferencingPromisedGeneratedTypesAreProcessedInTheSameRound() throws Exception {
+        final var processor = new GeneratingProcessor(false, true);
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {}
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {
+                              private Alpha_Generated _alpha;
+                            }
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            @Generate
+                            public class Gamma {
+                              private java.util.List<com.example.Beta_Generated> _betas;
+                            }
+                            """)),
+                processor,
+                List.of("test.format_generated_source=false"));
+
+        assertEquals(processor.generatedTypeNames(), generatedTypeNames());
+        assertEquals(processor.generateRounds(), Set.of(1));
+    }
+
+    @Test
+    public void analysisOnlyValidatesTypesWithoutGeneratingOutput() throws Exception {
+        final var processor = new GeneratingProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {}
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {}
+                            """)),
+                processor,
+                List.of("test.analysis_only=true"));
+
+        assertTrue(processor.generatedTypeNames().isEmpty());
+        assertEquals(processor.generateRounds(), Set.of(1));
+    }
+
+    @Test
+    public void analysisOnlyRevalidatesTypesThatReferencePromisedTypesInTheNextRound() throws Exception {
+        final var processor = new GeneratingProcessor();
+
+        TestUtil.compileWithErrors(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {
+                              private Beta_Generated _beta;
+                            }
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {}
+                            """),
+                        TestUtil.source("com.example.ExtraGamma", """
+                            package com.example;
+                            @Generate
+                            public class ExtraGamma {}
+                            """)),
+                processor,
+                List.of("test.analysis_only=true"));
+
+        // Alpha is deferred in the first round, before Beta_Generated is promised, and processed in the second round
+        // that the source written for ExtraGamma causes, rather than in the final round. Beta_Generated is never
+        // written in analysis-only mode so the compile itself fails.
+        assertTrue(processor.generatedTypeNames().isEmpty());
+        assertEquals(
+                processor.generatedElementNames(),
+                Set.of("com.example.Alpha", "com.example.Beta", "com.example.ExtraGamma"));
+        assertEquals(processor.generateRounds(), Set.of(1, 2));
+    }
+
+    @Test
+    public void analysisOnlySuppressesResourceWritesForTheWholeRound() {
+        final var processor = new Processor();
+        final RoundEnvironment env = TestUtil.proxy(RoundEnvironment.class, (self, method, args) -> {
+            if ("getRootElements".equals(method.getName())) {
+                return Set.of();
+            } else if ("processingOver".equals(method.getName())) {
+                return false;
+            }
+            return TestUtil.unsupported(method);
+        });
+
+        processor.init(processingEnvironment(Map.of("test.analysis_only", "true"), new CapturingMessager()));
+        assertFalse(ResourceUtil.areWritesSuppressed());
+
+        processor.startRound(env);
+        assertTrue(ResourceUtil.areWritesSuppressed());
+
+        processor.endRound(env);
+        assertFalse(ResourceUtil.areWritesSuppressed());
+    }
+
+    @Test
+    public void outputCacheReplaysOutputOfUnchangedTypes() throws Exception {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final List<String> options =
+                    List.of("test.format_generated_source=false", "test.output_cache.dir=" + directory);
+            final TestUtil.Source generate = TestUtil.source("com.example.Generate", """
+                package com.example;
+                public @interface Generate {}
+                """);
+            final TestUtil.Source beta = TestUtil.source("com.example.Beta", """
+                package com.example;
+                @Generate
+                public class Beta {}
+                """);
+
+            final var processor = new GeneratingProcessor();
+            TestUtil.compile(
+                    List.of(
+                            generate,
+                            TestUtil.source("com.example.Alpha", """
+                                package com.example;
+                                @Generate
+                                public class Alpha {}
+                                """),
+                            beta),
+                    processor,
+                    options);
+            assertEquals(processor.generatedElementNames(), Set.of("com.example.Alpha", "com.example.Beta"));
+
+            final var unchangedProcessor = new GeneratingProcessor();
+            TestUtil.compile(
+                    List.of(
+                            generate,
+                            TestUtil.source("com.example.Alpha", """
+                                package com.example;
+                                @Generate
+                                public class Alpha {}
+                                """),
+                            beta),
+                    unchangedProcessor,
+                    options);
+            assertTrue(unchangedProcessor.generatedElementNames().isEmpty());
+            assertEquals(
+                    unchangedProcessor.generatedTypeNames(),
+                    Set.of("com.example.Alpha_Generated", "com.example.Beta_Generated"));
+
+            final var changedProcessor = new GeneratingProcessor();
+            TestUtil.compile(
+                    List.of(
+                            generate,
+                            TestUtil.source("com.example.Alpha", """
+                                package com.example;
+                                @Generate
+                                public class Alpha {
+                                  private int _count;
+                                }
+                                """),
+                            beta),
+                    changedProcessor,
+                    options);
+            assertEquals(changedProcessor.generatedElementNames(), Set.of("com.example.Alpha"));
+            assertEquals(
+                    changedProcessor.generatedTypeNames(),
+                    Set.of("com.example.Alpha_Generated", "com.example.Beta_Generated"));
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void outputCacheReplaysTypesInEmissionOrderWhenRenderingOnWorkerThreads() throws Exception {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final TestUtil.Source generate = TestUtil.source("com.example.Generate", """
+                package com.example;
+                public @interface Generate {}
+                """);
+            final TestUtil.Source beta = TestUtil.source("com.example.Beta", """
+                package com.example;
+                @Generate
+                public class Beta {}
+                """);
+            final List<String> options = List.of(
+                    "test.format_generated_source=false", "test.emit.threads=3", "test.output_cache.dir=" + directory);
+            TestUtil.compile(
+                    List.of(
+                            generate,
+                            TestUtil.source("com.example.Alpha", """
+                                package com.example;
+                                @Generate
+                                public class Alpha {}
+                                """),
+                            beta),
+                    new GeneratingProcessor(),
+                    options);
+
+            final List<TestUtil.Source> sources = List.of(
+                    generate,
+                    TestUtil.source("com.example.Alpha", """
+                        package com.example;
+                        @Generate
+                        public class Alpha {
+                          private int _count;
+                        }
+                        """),
+                    beta);
+            final var uncachedProcessor = new GeneratingProcessor();
+            TestUtil.compile(
+                    sources,
+                    uncachedProcessor,
+                    List.of(
+                            "test.format_generated_source=false",
+                            "test.output_cache.dir=" + directory.resolve("uncached")));
+            final var processor = new GeneratingProcessor();
+            TestUtil.compile(sources, processor, options);
+
+            assertEquals(processor.generatedElementNames(), Set.of("com.example.Alpha"));
+            assertEquals(processor.writtenSources(), uncachedProcessor.writtenSources());
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void outputCacheDoesNotStoreOutputOfActionsThatReportDiagnostics() throws Exception {
+        final Path directory = Files.createTempDirectory("output-cache");
+        try {
+            final List<String> options =
+                    List.of("test.format_generated_source=false", "test.output_cache.dir=" + directory);
+            final List<TestUtil.Source> sources = List.of(
+                    TestUtil.source("com.example.Generate", """
+                        package com.example;
+                        public @interface Generate {}
+                        """),
+                    TestUtil.source("com.example.Alpha", """
+                        package com.example;
+                        @Generate
+                        public class Alpha {}
+                        """),
+                    TestUtil.source("com.example.WarnBeta", """
+                        package com.example;
+                        @Generate
+                        public class WarnBeta {}
+                        """));
+
+            TestUtil.compile(sources, new GeneratingProcessor(), options);
+
+            final var processor = new GeneratingProcessor();
+            final var result = TestUtil.compile(sources, processor, options);
+            assertEquals(processor.generatedElementNames(), Set.of("com.example.WarnBeta"));
+            assertEquals(
+                    processor.generatedTypeNames(),
+                    Set.of("com.example.Alpha_Generated", "com.example.WarnBeta_Generated"));
+            assertTrue(
+                    result.diagnosticsList().stream()
+                            .anyMatch(d -> Diagnostic.Kind.WARNING == d.getKind()
+                                    && d.getMessage(null).equals("Generating type for WarnBeta")),
+                    result.diagnostics());
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void profileReportRecordsElementsAndRounds() throws Exception {
+        final Path directory = Files.createTempDirectory("profile");
+        try {
+            final Path report = directory.resolve("reports/profile.json");
+            final var processor = new GeneratingProcessor();
+
+            TestUtil.compile(
+                    List.of(
+                            TestUtil.source("com.example.Generate", """
+                                package com.example;
+                                public @interface Generate {}
+                                """),
+                            TestUtil.source("com.example.Alpha", """
+                                package com.example;
+                                @Generate
+                                public class Alpha {}
+                                """),
+                            TestUtil.source("com.example.Beta", """
+                                package com.example;
+                                @Generate
+                                public class Beta {
+                                  private Alpha_Generated _alpha;
+                                }
+                                """)),
+                    processor,
+                    List.of(
+                            "test.format_generated_source=false",
+                            "test.profile=true",
+                            "test.profile.report=" + report,
+                            "test.profile.top_n=1"));
+
+            final String json = Files.readString(report);
+            assertTrue(json.contains("\"processor\": \"" + GeneratingProcessor.class.getName() + "\""), json);
+            assertTrue(json.contains("\"elementCount\": 2"), json);
+            // Beta is deferred in the first round until Alpha_Generated has been generated
+            assertTrue(json.contains("\"deferralCount\": 1"), json);
+            assertTrue(json.contains("\"generatedTypeCount\": 2"), json);
+            assertTrue(json.contains("\"round\": 3"), json);
+            assertEquals(json.split("\"element\": ").length, 2, json);
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void debugLogReceivesDebugMessagesInsteadOfMessager() throws Exception {
+        final Path directory = Files.createTempDirectory("debug");
+        try {
+            final Path log = directory.resolve("logs/debug.log");
+
+            final TestUtil.CompilationResult result = TestUtil.compile(
+                    generatingSources(),
+                    new GeneratingProcessor(),
+                    List.of("test.format_generated_source=false", "test.debug=true", "test.debug.log=" + log));
+
+            final List<String> lines = Files.readAllLines(log);
+            assertTrue(lines.contains("Performing 'Generate' action on element com.example.Alpha"), lines.toString());
+            assertTrue(lines.contains("Scheduling element com.example.Alpha for processing"), lines.toString());
+            assertTrue(
+                    result.diagnosticsList().stream().noneMatch(d -> Diagnostic.Kind.NOTE == d.getKind()),
+                    result.diagnostics());
+        } finally {
+            TestUtil.deleteDir(directory);
+        }
+    }
+
+    @Test
+    public void debugFormatsParameterizedMessages() {
+        final var messager = new CapturingMessager();
+        final var processor = new Processor();
+
+        processor.init(processingEnvironment(Map.of("test.debug", "true"), messager));
+        processor.debugMessage("Deferred {} of {} elements", 2, 5);
+
+        assertEquals(messager.messages().size(), 1);
+        assertEquals(messager.messages().get(0).message(), "Deferred 2 of 5 elements");
+    }
+
+    @Test
+    public void flightRecorderEventsDescribeProcessorWork() throws Exception {
+        final Path recordingFile = Files.createTempFile("processor", ".jfr");
+        try {
+            try (final var recording = new Recording()) {
+                for (final String event : List.of("Round", "Action", "Validation", "Deferral", "FilerWrite")) {
+                    recording.enable("org.realityforge.proton." + event).withoutThreshold();
+                }
+                recording.start();
+                TestUtil.compile(
+                        List.of(
+                                TestUtil.source("com.example.Generate", """
+                                    package com.example;
+                                    public @interface Generate {}
+                                    """),
+                                TestUtil.source("com.example.Alpha", """
+                                    package com.example;
+                                    @Generate
+                                    public class Alpha {}
+                                    """),
+                                TestUtil.source("com.example.Beta", """
+                                    package com.example;
+                                    @Generate
+                                    public class Beta {
+                                      private Alpha_Generated _alpha;
+                                    }
+                                    """)),
+                        new GeneratingProcessor(),
+                        List.of("test.format_generated_source=false"));
+                recording.stop();
+                recording.dump(recordingFile);
+            }
+
+            final Map<String, List<RecordedEvent>> events = new HashMap<>();
+            for (final RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+                if (GeneratingProcessor.class.getName().equals(event.getString("processor"))) {
+                    events.computeIfAbsent(event.getEventType().getName(), k -> new ArrayList<>()).add(event);
+                }
+            }
+            assertTrue(events.get("org.realityforge.proton.Round").size() >= 3);
+            assertEquals(
+                    eventValues(events.get("org.realityforge.proton.Action"), "element"),
+                    Set.of("com.example.Alpha", "com.example.Beta"));
+            final List<RecordedEvent> deferrals = events.get("org.realityforge.proton.Deferral");
+            assertEquals(eventValues(deferrals, "element"), Set.of("com.example.Beta"));
+            assertEquals(eventValues(deferrals, "unresolvedTypes"), Set.of("Alpha_Generated"));
+            assertTrue(events.get("org.realityforge.proton.Validation").stream()
+                    .anyMatch(e -> "com.example.Beta".equals(e.getString("element")) && !e.getBoolean("valid")));
+            assertEquals(
+                    eventValues(events.get("org.realityforge.proton.FilerWrite"), "type"),
+                    Set.of("com.example.Alpha_Generated", "com.example.Beta_Generated"));
+        } finally {
+            Files.deleteIfExists(recordingFile);
+        }
+    }
+
+    private static Set<String> eventValues(final List<RecordedEvent> events, final String field) {
+        final Set<String> values = new HashSet<>();
+        for (final RecordedEvent event : events) {
+            values.add(event.getString(field));
+        }
+        return values;
+    }
+
+    @Test
+    public void stalledDeferredTypesAreReportedBeforeProcessingIsOver() throws Exception {
+        final var processor = new GeneratingProcessor();
+
+        // Gamma_Generated causes a second round in which the processor emits nothing and resolves nothing
+        final var result = TestUtil.compileWithErrors(
+                circularSources(),
+                processor,
+                List.of("test.format_generated_source=false", "test.defer.report_stalled=true"));
+
+        final List<String> errors = errors(result);
+        assertTrue(
+                errors.stream()
+                        .anyMatch(m -> m.startsWith("GeneratingProcessor unable to process com.example.Alpha because "
+                                + "processing stalled while it waited on [Beta_Generated].")),
+                result.diagnostics());
+        assertFalse(
+                errors.stream().anyMatch(m -> m.contains("not all of its dependencies could be resolved")),
+                result.diagnostics());
+        assertEquals(processor.generatedTypeNames(), Set.of("com.example.Gamma_Generated"));
+    }
+
+    @Test
+    public void deferredTypesThatBecomeValidInLaterRoundsAreNotReportedAsStalled() throws Exception {
+        final var processor = new GeneratingProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {
+                              private Beta_Generated _beta;
+                            }
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {
+                              private Gamma_Generated _gamma;
+                            }
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            @Generate
+                            public class Gamma {}
+                            """)),
+                processor,
+                List.of("test.format_generated_source=false", "test.defer.report_stalled=true"));
+
+        assertEquals(
+                processor.generatedTypeNames(),
+                Set.of("com.example.Alpha_Generated", "com.example.Beta_Generated", "com.example.Gamma_Generated"));
+    }
+
+    private static List<TestUtil.Source> circularSources() {
+        return List.of(
+                TestUtil.source("com.example.Generate", """
+                    package com.example;
+                    public @interface Generate {}
+                    """),
+                TestUtil.source("com.example.Alpha", """
+                    package com.example;
+                    @Generate
+                    public class Alpha {
+                      private Beta_Generated _beta;
+                    }
+                    """),
+                TestUtil.source("com.example.Beta", """
+                    package com.example;
+                    @Generate
+                    public class Beta {
+                      private Alpha_Generated _alpha;
+                    }
+                    """),
+                TestUtil.source("com.example.Gamma", """
+                    package com.example;
+                    @Generate
+                    public class Gamma {}
+                    """));
+    }
+
+    private static List<String> errors(final TestUtil.CompilationResult result) {
+        return result.diagnosticsList().stream()
+                .filter(d -> Diagnostic.Kind.ERROR == d.getKind())
+                .map(d -> d.getMessage(null))
+                .toList();
+    }
+
+    @Test
+    public void getNewTypeElementsToProcessMatchesElementsAnnotatedWith() throws Exception {
+        final var processor = new IndexingProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            @java.lang.annotation.Inherited
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Other", """
+                            package com.example;
+                            public @interface Other {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha {
+                              @Other
+                              public static class Nested {}
+                            }
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Other
+                            public class Beta extends Alpha {}
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            public class Gamma {}
+                            """)),
+                processor,
+                List.of());
+
+        assertEquals(processor.typeNames("com.example.Generate"), Set.of("com.example.Alpha", "com.example.Beta"));
+        assertEquals(processor.typeNames("com.example.Other"), Set.of("com.example.Alpha.Nested", "com.example.Beta"));
+        assertTrue(processor.matchedElementsAnnotatedWith());
+    }
+
+    @Test
+    public void processRegisteredTypeElementsAppliesEachHandlerToAnnotatedTypes() throws Exception {
+        final var processor = new RegistryProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Other", """
+                            package com.example;
+                            public @interface Other {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            @Other
+                            public class Alpha {}
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Other
+                            public class Beta {
+                              private Alpha_Generated _alpha;
+                            }
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            @Generate
+                            public class Gamma {}
+                            """)),
+                processor,
+                List.of("test.format_generated_source=false"));
+
+        // Handlers are applied in registration order and Beta is deferred until Alpha_Generated is generated
+        assertEquals(
+                processor.actions(),
+                List.of(
+                        "Generate:com.example.Alpha",
+                        "Generate:com.example.Gamma",
+                        "Other:com.example.Alpha",
+                        "Other:com.example.Beta"));
+    }
+
+    @Test
+    public void dependencyOrderProcessesReferencedTypesFirst() throws Exception {
+        final var processor = new RegistryProcessor();
+
+        TestUtil.compile(
+                List.of(
+                        TestUtil.source("com.example.Generate", """
+                            package com.example;
+                            public @interface Generate {}
+                            """),
+                        TestUtil.source("com.example.Other", """
+                            package com.example;
+                            public @interface Other {}
+                            """),
+                        TestUtil.source("com.example.Alpha", """
+                            package com.example;
+                            @Generate
+                            public class Alpha extends Beta {}
+                            """),
+                        TestUtil.source("com.example.Beta", """
+                            package com.example;
+                            @Generate
+                            public class Beta {
+                              public java.util.List<Gamma.Nested> gammas() { return null; }
+                            }
+                            """),
+                        TestUtil.source("com.example.Gamma", """
+                            package com.example;
+                            @Generate
+                            public class Gamma {
+                              public static class Nested {}
+                            }
+                            """),
+                        TestUtil.source("com.example.Delta", """
+                            package com.example;
+                            @Generate
+                            public class Delta {
+                              private Epsilon _epsilon;
+                            }
+                            """),
+                        TestUtil.source("com.example.Epsilon", """
+                            package com.example;
+                            @Generate
+                            public class Epsilon {
+                              private Delta _delta;
+                            }
+                            """)),
+                processor,
+                List.of("test.format_generated_source=false", "test.dependency_order=true"));
+
+        // Types in a cycle retain their original order
+        assertEquals(
+                processor.actions(),
+                List.of(
+                        "Generate:com.example.Gamma",
+                        "Generate:com.example.Beta",
+                        "Generate:com.example.Alpha",
+                        "Generate:com.example.Delta",
+                        "Generate:com.example.Epsilon"));
+    }
+
+    @Test
+    public void emitTypeSpecRejectsDuplicateTypes() throws Exception {
+        final var processor = new Processor();
+        processor.init(processingEnvironment(Map.of(), new CapturingMessager()));
+        final TypeSpec typeSpec = TypeSpec.classBuilder("Widget").build();
+
+        processor.emitTypeSpecValue("com.example", typeSpec);
+        try {
+            processor.emitTypeSpecValue("com.example", typeSpec);
+            fail("Expected FilerException");
+        } catch (final FilerException e) {
+            assertEquals(e.getMessage(), "Attempt to emit the generated type com.example.Widget more than once");
+        }
+    }
+
+    @Test
+    public void isolatingProcessorsMustEmitTypesWithOneOriginatingTopLevelType() throws Exception {
+        final var processor = new Processor(IncrementalCategory.ISOLATING);
+        processor.init(processingEnvironment(Map.of(), new CapturingMessager()));
+        final PackageElement example = packageElement("com.example");
+        final TypeElement widget = typeElement("com.example.Widget", example);
+        final TypeElement part = typeElement("com.example.Widget.Part", widget);
+        final TypeElement base = typeElement("com.example.Base", example);
+        final TypeElement gadget = typeElement("com.example.Gadget", example, widget);
+
+        // Elements nested in the same top-level type are a single originating type
+        processor.emitTypeSpecValue(
+                "com.example",
+                TypeSpec.classBuilder("Widget_Generated")
+                        .addOriginatingElement(widget)
+                        .addOriginatingElement(part)
+                        .build());
+        // The supertypes of the originating type, as added by GeneratorUtil.addOriginatingTypes(...), are omitted
+        processor.emitTypeSpecValue(
+                "com.example",
+                TypeSpec.classBuilder("Gadget_Generated")
+                        .addOriginatingElement(gadget)
+                        .addOriginatingElement(widget)
+                        .build());
+        try {
+            processor.emitTypeSpecValue(
+                    "com.example",
+                    TypeSpec.classBuilder("Widget_Other")
+                            .addOriginatingElement(widget)
+                            .addOriginatingElement(base)
+                            .build());
+            fail("Expected FilerException");
+        } catch (final FilerException e) {
+            assertTrue(
+                    Objects.requireNonNull(e.getMessage())
+                            .contains("com.example.Widget_Other with originating elements from 2 top-level types "
+                                    + "[com.example.Base, com.example.Widget]"),
+                    e.getMessage());
+        }
+        try {
+            processor.emitTypeSpecValue("com.example", TypeSpec.classBuilder("Orphan").build());
+            fail("Expected FilerException");
+        } catch (final FilerException e) {
+            assertTrue(Objects.requireNonNull(e.getMessage()).contains("from 0 top-level types"), e.getMessage());
+        }
+
+        // Aggregating processors may emit types derived from any number of types
+        final var aggregating = new Processor(IncrementalCategory.AGGREGATING);
+        aggregating.init(processingEnvironment(Map.of(), new CapturingMessager()));
+        aggregating.emitTypeSpecValue("com.example", TypeSpec.classBuilder("Registry").build());
+    }
+
+    @Test
+    public void isolatingProcessorsOmitTheSupertypesOfTheOriginatingTypeWhenWritingTypesForGradle() throws Exception {
+        final var processor = new OriginatingTypesProcessor(IncrementalCategory.ISOLATING);
+
+        TestUtil.compile(supertypeSources(), processor, List.of("test.gradle_incremental=true"));
+
+        assertEquals(
+                processor.originatingTypeNames(),
+                Map.of("com.example.Widget_Generated", List.of("com.example.Widget")));
+    }
+
+    @Test
+    public void isolatingProcessorsWriteTheSupertypesOfTheOriginatingTypeForOtherBuildTools() throws Exception {
+        final var processor = new OriginatingTypesProcessor(IncrementalCategory.ISOLATING);
+
+        TestUtil.compile(supertypeSources(), processor, List.of());
+
+        assertEquals(
+                processor.originatingTypeNames(),
+                Map.of("com.example.Widget_Generated", List.of("com.example.Widget", "com.example.Base")));
+    }
+
+    @Test
+    public void aggregatingProcessorsWriteTheSupertypesOfTheOriginatingTypeForGradle() throws Exception {
+        final var processor = new OriginatingTypesProcessor(IncrementalCategory.AGGREGATING);
+
+        TestUtil.compile(supertypeSources(), processor, List.of("test.gradle_incremental=true"));
+
+        assertEquals(
+                processor.originatingTypeNames(),
+                Map.of("com.example.Widget_Generated", List.of("com.example.Widget", "com.example.Base")));
+    }
+
+    private static List<TestUtil.Source> supertypeSources() {
+        return List.of(
+                TestUtil.source("com.example.Generate", """
+                    package com.example;
+                    public @interface Generate {}
+                    """),
+                TestUtil.source("com.example.Base", """
+                    package com.example;
+                    public abstract class Base implements Runnable {}
+                    """),
+                TestUtil.source("com.example.Widget", """
+                    package com.example;
+                    @Generate
+                    public class Widget extends Base {
+                      public void run() {}
+                    }
+                    """));
+    }
+
+    private static PackageElement packageElement(final String qualifiedName) {
+        return TestUtil.proxy(PackageElement.class, (self, method, args) -> {
+            if ("getKind".equals(method.getName())) {
+                return ElementKind.PACKAGE;
+            } else if ("getQualifiedName".equals(method.getName())) {
+                return TestUtil.name(qualifiedName);
+            }
+            return TestUtil.unsupported(method);
+        });
+    }
+
+    private static TypeElement typeElement(final String qualifiedName, final Element enclosingElement) {
+        return typeElement(qualifiedName, enclosingElement, null);
+    }
+
+    private static TypeElement typeElement(
+            final String qualifiedName, final Element enclosingElement, @Nullable final TypeElement superclass) {
+        final TypeMirror superclassType = null == superclass
+                ? TestUtil.proxy(NoType.class, (self, method, args) -> {
+                    if ("getKind".equals(method.getName())) {
+                        return TypeKind.NONE;
+                    }
+                    return TestUtil.unsupported(method);
+                })
+                : TestUtil.proxy(DeclaredType.class, (self, method, args) -> {
+                    if ("getKind".equals(method.getName())) {
+                        return TypeKind.DECLARED;
+                    } else if ("asElement".equals(method.getName())) {
+                        return superclass;
+                    }
+                    return TestUtil.unsupported(method);
+                });
+        return TestUtil.proxy(TypeElement.class, (self, method, args) -> {
+            if ("getKind".equals(method.getName())) {
+                return ElementKind.CLASS;
+            } else if ("getQualifiedName".equals(method.getName())) {
+                return TestUtil.name(qualifiedName);
+            } else if ("getEnclosingElement".equals(method.getName())) {
+                return enclosingElement;
+            } else if ("getSuperclass".equals(method.getName())) {
+                return superclassType;
+            } else if ("getInterfaces".equals(method.getName())) {
+                return List.of();
+            }
+            return TestUtil.unsupported(method);
+        });
+    }
+
+    private static List<TestUtil.Source> generatingSources() {
+        return List.of(
+                TestUtil.source("com.example.Generate", """
+                    package com.example;
+                    public @interface Generate {}
+                    """),
+                TestUtil.source("com.example.Alpha", """
+                    package com.example;
+                    @Generate
+                    public class Alpha {}
+                    """),
+                TestUtil.source("com.example.Beta", """
+                    package com.example;
+                    @Generate
+                    public class Beta {}
+                    """),
+                TestUtil.source("com.example.Gamma", """
+                    package com.example;
+                    @Generate
+                    public class Gamma {}
+                    """));
+    }
+
+    private static Set<String> generatedTypeNames() {
+        return Set.of("com.example.Alpha_Generated", "com.example.Beta_Generated", "com.example.Gamma_Generated");
+    }
+
     private static ProcessingEnvironment processingEnvironment(
             final Map<String, String> options, final Messager messager) {
         return TestUtil.proxy(ProcessingEnvironment.class, (self, method, args) -> {
@@ -109,6 +1333,16 @@ public final class StandardProcessorTest {
     }
 
     private static final class Processor extends AbstractStandardProcessor {
+        private final IncrementalCategory _incrementalCategory;
+
+        Processor() {
+            this(IncrementalCategory.NONE);
+        }
+
+        Processor(final IncrementalCategory incrementalCategory) {
+            _incrementalCategory = incrementalCategory;
+        }
+
         @Override
         public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
             return false;
@@ -124,10 +1358,27 @@ public final class StandardProcessorTest {
             return "test";
         }
 
+        @Override
+        protected IncrementalCategory getIncrementalCategory() {
+            return _incrementalCategory;
+        }
+
         boolean shouldDeferUnresolvedValue() {
             return shouldDeferUnresolved();
         }
 
+        boolean shouldCacheOutputValue(final TypeElement element) {
+            return shouldCacheOutput(element);
+        }
+
+        boolean shouldReportStalledDeferralsValue() {
+            return shouldReportStalledDeferrals();
+        }
+
+        boolean shouldOrderByDependenciesValue() {
+            return shouldOrderByDependencies();
+        }
+
         boolean isProfileEnabledValue() {
             return isProfileEnabled();
         }
@@ -148,13 +1399,525 @@ public final class StandardProcessorTest {
             return readBooleanOption(relativeKey, defaultValue);
         }
 
+        @Nullable
+        String readStringOptionValue(final String relativeKey) {
+            return readStringOption(relativeKey);
+        }
+
+        int readIntOptionValue(final String relativeKey, final int defaultValue) {
+            return readIntOption(relativeKey, defaultValue);
+        }
+
+        void emitTypeSpecValue(final String packageName, final TypeSpec typeSpec) throws IOException {
+            emitTypeSpec(packageName, typeSpec);
+        }
+
+        @Override
+        protected boolean shouldQueueEmission() {
+            // Queued types are never written so tests can emit without a Filer
+            return true;
+        }
+
         void debugMessage(final String message) {
             debug(() -> message);
         }
 
+        void debugMessage(final String pattern, final Object arg1, final Object arg2) {
+            debug(pattern, arg1, arg2);
+        }
+
         void warningMessage(final String message, final Element element) {
             warning(message, element);
         }
+
+        void errorMessage(final RoundEnvironment env, final String message, final Element element) {
+            reportError(env, message, element);
+        }
+
+        void startRound(final RoundEnvironment env) {
+            collectRootTypeNames(env);
+        }
+
+        void endRound(final RoundEnvironment env) {
+            clearRootTypeNamesIfProcessingOver(env);
+        }
+
+        void performActionValue(final RoundEnvironment env, final Element element, final Action<Element> action) {
+            performAction(env, "Validate", action, element, new StopWatch("Validate"));
+        }
+    }
+
+    @SupportedAnnotationTypes({"com.example.Generate", "com.example.Other"})
+    private static final class IndexingProcessor extends AbstractStandardProcessor {
+        private final Map<String, Set<String>> _typeNames = new HashMap<>();
+
+        private boolean _matchedElementsAnnotatedWith = true;
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+            collectRootTypeNames(env);
+            for (final TypeElement annotation : annotations) {
+                final String annotationClassname = annotation.getQualifiedName().toString();
+                final Set<String> typeNames = new HashSet<>();
+                for (final TypeElement type : getNewTypeElementsToProcess(annotations, env, annotationClassname)) {
+                    typeNames.add(type.getQualifiedName().toString());
+                }
+                final Set<String> expected = new HashSet<>();
+                for (final Element element : env.getElementsAnnotatedWith(annotation)) {
+                    expected.add(((TypeElement) element).getQualifiedName().toString());
+                }
+                _matchedElementsAnnotatedWith &= expected.equals(typeNames);
+                _typeNames.computeIfAbsent(annotationClassname, k -> new HashSet<>()).addAll(typeNames);
+            }
+            clearRootTypeNamesIfProcessingOver(env);
+            return true;
+        }
+
+        @Override
+        protected String getIssueTrackerURL() {
+            return "https://example.com/issues";
+        }
+
+        @Override
+        protected String getOptionPrefix() {
+            return "test";
+        }
+
+        Set<String> typeNames(final String annotationClassname) {
+            return _typeNames.getOrDefault(annotationClassname, Set.of());
+        }
+
+        boolean matchedElementsAnnotatedWith() {
+            return _matchedElementsAnnotatedWith;
+        }
+    }
+
+    @SupportedAnnotationTypes({"com.example.Generate", "com.example.Other"})
+    private static final class RegistryProcessor extends AbstractStandardProcessor {
+        private final StopWatch _generateStopWatch = new StopWatch("Generate");
+
+        private final StopWatch _otherStopWatch = new StopWatch("Other");
+
+        private final List<String> _actions = new ArrayList<>();
+
+        RegistryProcessor() {
+            addTypeHandler("com.example.Generate", "Generate", this::generate, _generateStopWatch);
+            addTypeHandler(
+                    "com.example.Other",
+                    "Other",
+                    element -> _actions.add("Other:" + element.getQualifiedName()),
+                    _otherStopWatch);
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+            collectRootTypeNames(env);
+            processRegisteredTypeElements(annotations, env);
+            errorIfProcessingOverAndInvalidTypesDetected(env);
+            clearRootTypeNamesIfProcessingOver(env);
+            return true;
+        }
+
+        @Override
+        protected String getIssueTrackerURL() {
+            return "https://example.com/issues";
+        }
+
+        @Override
+        protected String getOptionPrefix() {
+            return "test";
+        }
+
+        List<String> actions() {
+            return _actions;
+        }
+
+        private void generate(final TypeElement element) throws IOException {
+            _actions.add("Generate:" + element.getQualifiedName());
+            emitTypeSpec(
+                    GeneratorUtil.getQualifiedPackageName(element),
+                    TypeSpec.classBuilder(GeneratorUtil.getGeneratedSimpleClassName(element, "", "_Generated"))
+                            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                            .addOriginatingElement(element)
+                            .build());
+        }
+    }
+
+    /**
+     * A processor that adds the originating types via GeneratorUtil.addOriginatingTypes(...) and records the
+     * originating elements passed to the Filer for each generated type.
+     */
+    @SupportedAnnotationTypes("com.example.Generate")
+    private static final class OriginatingTypesProcessor extends AbstractStandardProcessor {
+        private final StopWatch _generateStopWatch = new StopWatch("Generate");
+
+        private final Map<String, List<String>> _originatingTypeNames = new HashMap<>();
+
+        private final IncrementalCategory _incrementalCategory;
+
+        OriginatingTypesProcessor(final IncrementalCategory incrementalCategory) {
+            _incrementalCategory = incrementalCategory;
+            addTypeHandler("com.example.Generate", "Generate", this::generate, _generateStopWatch);
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public synchronized void init(final ProcessingEnvironment processingEnv) {
+            final Filer filer = processingEnv.getFiler();
+            final Filer recordingFiler = TestUtil.proxy(Filer.class, (self, method, args) -> {
+                if ("createSourceFile".equals(method.getName())) {
+                    final List<String> names = new ArrayList<>();
+                    for (final Element element : (Element[]) args[1]) {
+                        names.add(((TypeElement) element).getQualifiedName().toString());
+                    }
+                    _originatingTypeNames.put(args[0].toString(), names);
+                }
+                return GeneratingProcessor.invoke(method, filer, args);
+            });
+            super.init(TestUtil.proxy(ProcessingEnvironment.class, (self, method, args) -> {
+                if ("getFiler".equals(method.getName())) {
+                    return recordingFiler;
+                }
+                return GeneratingProcessor.invoke(method, processingEnv, args);
+            }));
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+            collectRootTypeNames(env);
+            processRegisteredTypeElements(annotations, env);
+            errorIfProcessingOverAndInvalidTypesDetected(env);
+            clearRootTypeNamesIfProcessingOver(env);
+            return true;
+        }
+
+        @Override
+        protected String getIssueTrackerURL() {
+            return "https://example.com/issues";
+        }
+
+        @Override
+        protected String getOptionPrefix() {
+            return "test";
+        }
+
+        @Override
+        protected IncrementalCategory getIncrementalCategory() {
+            return _incrementalCategory;
+        }
+
+        Map<String, List<String>> originatingTypeNames() {
+            return _originatingTypeNames;
+        }
+
+        private void generate(final TypeElement element) throws IOException {
+            final TypeSpec.Builder builder =
+                    TypeSpec.classBuilder(GeneratorUtil.getGeneratedSimpleClassName(element, "", "_Generated"))
+                            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+            GeneratorUtil.addOriginatingTypes(processingEnv, element, builder);
+            emitTypeSpec(GeneratorUtil.getQualifiedPackageName(element), builder.build());
+        }
+    }
+
+    @SupportedAnnotationTypes("com.example.Generate")
+    private static final class GeneratingProcessor extends AbstractStandardProcessor {
+        private final DeferredElementSet _deferredTypes = new DeferredElementSet();
+
+        private final StopWatch _generateStopWatch = new StopWatch("Generate");
+
+        private final Set<String> _generatedTypeNames = new HashSet<>();
+
+        private final Set<Integer> _generateRounds = new HashSet<>();
+
+        private final Set<String> _generatedElementNames = new HashSet<>();
+
+        /**
+         * The name and content of each generated source in the order that it was written via the Filer.
+         */
+        private final List<String> _writtenSources = new ArrayList<>();
+
+        private final boolean _queueEmission;
+
+        private final boolean _emitQueuedTypes;
+
+        private final boolean _promiseGeneratedTypes;
+
+        private int _round;
+
+        GeneratingProcessor() {
+            this(false);
+        }
+
+        GeneratingProcessor(final boolean queueEmission) {
+            this(queueEmission, false);
+        }
+
+        GeneratingProcessor(final boolean queueEmission, final boolean promiseGeneratedTypes) {
+            this(queueEmission, promiseGeneratedTypes, queueEmission);
+        }
+
+        GeneratingProcessor(
+                final boolean queueEmission, final boolean promiseGeneratedTypes, final boolean emitQueuedTypes) {
+            _queueEmission = queueEmission;
+            _promiseGeneratedTypes = promiseGeneratedTypes;
+            _emitQueuedTypes = emitQueuedTypes;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public synchronized void init(final ProcessingEnvironment processingEnv) {
+            final Filer filer = processingEnv.getFiler();
+            final Filer recordingFiler = TestUtil.proxy(Filer.class, (self, method, args) -> {
+                final Object result = invoke(method, filer, args);
+                if ("createSourceFile".equals(method.getName())) {
+                    return recordingSourceFile((JavaFileObject) Objects.requireNonNull(result), args[0].toString());
+                }
+                return result;
+            });
+            super.init(TestUtil.proxy(ProcessingEnvironment.class, (self, method, args) -> {
+                if ("getFiler".equals(method.getName())) {
+                    return recordingFiler;
+                }
+                return invoke(method, processingEnv, args);
+            }));
+        }
+
+        private JavaFileObject recordingSourceFile(final JavaFileObject sourceFile, final String name) {
+            return new ForwardingJavaFileObject<>(sourceFile) {
+                @Override
+                public Writer openWriter() throws IOException {
+                    final var content = new StringWriter();
+                    return new FilterWriter(fileObject.openWriter()) {
+                        @Override
+                        public void write(final int c) throws IOException {
+                            super.write(c);
+                            content.write(c);
+                        }
+
+                        @Override
+                        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+                            super.write(buffer, offset, length);
+                            content.write(buffer, offset, length);
+                        }
+
+                        @Override
+                        public void write(final String str, final int offset, final int length) throws IOException {
+                            super.write(str, offset, length);
+                            content.write(str, offset, length);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            _writtenSources.add(name + "\n" + content);
+                        }
+                    };
+                }
+            };
+        }
+
+        @Nullable
+        private static Object invoke(final Method method, final Object target, @Nullable final Object[] args)
+                throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+            _round++;
+            collectRootTypeNames(env);
+            for (final Element element : env.getRootElements()) {
+                if (element instanceof final TypeElement type
+                        && type.getQualifiedName().toString().endsWith("_Generated")) {
+                    _generatedTypeNames.add(type.getQualifiedName().toString());
+                }
+            }
+            if (_promiseGeneratedTypes) {
+                for (final TypeElement element : getNewTypeElementsToProcess(annotations, env, "com.example.Generate")) {
+                    promiseGeneratedType(GeneratorUtil.getGeneratedClassName(element, "", "_Generated"));
+                }
+            }
+            processTypeElements(
+                    annotations,
+                    env,
+                    "com.example.Generate",
+                    _deferredTypes,
+                    _generateStopWatch.getName(),
+                    this::generate,
+                    _generateStopWatch);
+            if (_emitQueuedTypes) {
+                emitQueuedTypeSpecs(env);
+            }
+            if (env.processingOver()) {
+                reportProfilerTimings();
+            }
+            errorIfProcessingOverAndInvalidTypesDetected(env);
+            clearRootTypeNamesIfProcessingOver(env);
+            return true;
+        }
+
+        @Override
+        protected String getIssueTrackerURL() {
+            return "https://example.com/issues";
+        }
+
+        @Override
+        protected String getOptionPrefix() {
+            return "test";
+        }
+
+        @Override
+        protected boolean shouldQueueEmission() {
+            return _queueEmission;
+        }
+
+        Set<String> generatedTypeNames() {
+            return _generatedTypeNames;
+        }
+
+        Set<Integer> generateRounds() {
+            return _generateRounds;
+        }
+
+        List<String> writtenSources() {
+            return _writtenSources;
+        }
+
+        Set<String> generatedElementNames() {
+            return _generatedElementNames;
+        }
+
+        @Override
+        protected boolean shouldCacheOutput(final TypeElement element) {
+            return true;
+        }
+
+        private void generate(final TypeElement element) throws IOException {
+            _generateRounds.add(_round);
+            _generatedElementNames.add(element.getQualifiedName().toString());
+            if (element.getSimpleName().toString().startsWith("Warn")) {
+                warning("Generating type for " + element.getSimpleName(), element);
+            }
+            if (element.getSimpleName().toString().startsWith("Extra")) {
+                // Written directly rather than emitted so that it is written in analysis-only mode and causes a round
+                final String name = element.getQualifiedName() + "_Extra";
+                try (Writer writer = processingEnv.getFiler().createSourceFile(name, element).openWriter()) {
+                    writer.write("package com.example;\npublic final class " + element.getSimpleName() + "_Extra {}\n");
+                }
+            }
+            emitTypeSpec(
+                    GeneratorUtil.getQualifiedPackageName(element),
+                    TypeSpec.classBuilder(GeneratorUtil.getGeneratedSimpleClassName(element, "", "_Generated"))
+                            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                            .addOriginatingElement(element)
+                            .build());
+        }
+    }
+
+    @SupportedAnnotationTypes("com.example.Generate")
+    private static final class SnapshotGeneratingProcessor extends AbstractStandardProcessor {
+        private final DeferredElementSet _deferredTypes = new DeferredElementSet();
+
+        private final StopWatch _generateStopWatch = new StopWatch("Generate");
+
+        private final Set<String> _generatedTypeNames = new HashSet<>();
+
+        private final Set<String> _snapshotTypeNames = ConcurrentHashMap.newKeySet();
+
+        private final Set<Thread> _generatorThreads = ConcurrentHashMap.newKeySet();
+
+        @Nullable
+        private final String _failingTypeName;
+
+        SnapshotGeneratingProcessor(@Nullable final String failingTypeName) {
+            _failingTypeName = failingTypeName;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+            collectRootTypeNames(env);
+            for (final Element element : env.getRootElements()) {
+                final String name = ((TypeElement) element).getQualifiedName().toString();
+                if (name.endsWith("_Generated")) {
+                    _generatedTypeNames.add(name);
+                }
+            }
+            processTypeSnapshots(
+                    annotations,
+                    env,
+                    "com.example.Generate",
+                    _deferredTypes,
+                    _generateStopWatch.getName(),
+                    this::generate,
+                    _generateStopWatch);
+            errorIfProcessingOverAndInvalidTypesDetected(env);
+            clearRootTypeNamesIfProcessingOver(env);
+            return true;
+        }
+
+        @Override
+        protected String getIssueTrackerURL() {
+            return "https://example.com/issues";
+        }
+
+        @Override
+        protected String getOptionPrefix() {
+            return "test";
+        }
+
+        Set<String> generatedTypeNames() {
+            return _generatedTypeNames;
+        }
+
+        Set<String> snapshotTypeNames() {
+            return _snapshotTypeNames;
+        }
+
+        Set<Thread> generatorThreads() {
+            return _generatorThreads;
+        }
+
+        private List<JavaFile> generate(final ModelSnapshot.TypeSnapshot type) {
+            _generatorThreads.add(Thread.currentThread());
+            final String name = type.className().simpleName();
+            _snapshotTypeNames.add(name);
+            if (name.equals(_failingTypeName)) {
+                throw new IllegalStateException("Generation of " + name + " failed");
+            }
+            return List.of(JavaFile.builder(
+                            type.className().packageName(),
+                            TypeSpec.classBuilder(name + "_Generated")
+                                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                                    .build())
+                    .build());
+        }
     }
 
     private static final class CapturingMessager implements Messager {
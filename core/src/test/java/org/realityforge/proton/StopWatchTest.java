@@ -1,8 +1,13 @@
 package org.realityforge.proton;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.testng.annotations.Test;
 
 public final class StopWatchTest {
@@ -31,6 +36,22 @@ public final class StopWatchTest {
         assertTrue(stopWatch.getTotalDuration() > firstDuration);
     }
 
+    @Test
+    public void startStopAccumulatesAllocatedBytes() {
+        final var stopWatch = new StopWatch("Load");
+
+        stopWatch.start();
+        final long[] values = new long[1024];
+        stopWatch.stop();
+
+        assertEquals(values.length, 1024);
+        if (HeapAccounting.isAllocationAccountingSupported()) {
+            assertTrue(stopWatch.getTotalAllocatedBytes() >= 1024L * Long.BYTES);
+        } else {
+            assertEquals(stopWatch.getTotalAllocatedBytes(), -1L);
+        }
+    }
+
     @Test
     public void resetClearsAccumulatedDuration() throws InterruptedException {
         final var stopWatch = new StopWatch("Load");
@@ -41,16 +62,133 @@ public final class StopWatchTest {
         stopWatch.reset();
 
         assertEquals(stopWatch.getTotalDuration(), 0L);
+        assertEquals(stopWatch.getInvocationCount(), 0L);
+        assertEquals(stopWatch.getMaxDuration(), 0L);
+        assertTrue(stopWatch.getTotalAllocatedBytes() <= 0L);
     }
 
-    @Test(
-            expectedExceptions = IllegalStateException.class,
-            expectedExceptionsMessageRegExp = "Attempted to start Load timer that had already been started")
-    public void startFailsWhenAlreadyStarted() {
+    @Test
+    public void startIsReentrantAndTimesOnlyTheOutermostInvocation() throws InterruptedException {
         final var stopWatch = new StopWatch("Load");
 
         stopWatch.start();
         stopWatch.start();
+        Thread.sleep(1);
+        stopWatch.stop();
+        stopWatch.stop();
+
+        assertEquals(stopWatch.getInvocationCount(), 1L);
+        assertTrue(stopWatch.getTotalDuration() > 0L);
+        assertTrue(stopWatch.getChildren().isEmpty());
+        assertTrue(stopWatch.isTopLevel());
+    }
+
+    @Test
+    public void nestedStopWatchesAreRecordedAsChildren() {
+        final var action = new StopWatch("Action");
+        final var validate = new StopWatch("Validate");
+        final var emit = new StopWatch("Emit");
+
+        action.start();
+        validate.start();
+        validate.stop();
+        emit.start();
+        emit.stop();
+        action.stop();
+        emit.start();
+        emit.stop();
+
+        assertEquals(action.getChildren(), List.of(validate, emit));
+        assertTrue(action.isTopLevel());
+        assertFalse(validate.isTopLevel());
+        assertTrue(emit.isTopLevel());
+        assertEquals(emit.getInvocationCount(), 2L);
+        assertTrue(action.getTotalDuration() >= validate.getTotalDuration());
+
+        final List<String> lines = StopWatch.describeTree(List.of(validate, emit, action));
+        assertEquals(lines.size(), 4, lines.toString());
+        assertTrue(lines.contains("  " + validate.describe()), lines.toString());
+        assertTrue(lines.contains("  " + emit.describe()), lines.toString());
+        assertTrue(lines.contains(action.describe()), lines.toString());
+        assertTrue(lines.contains(emit.describe()), lines.toString());
+    }
+
+    @Test
+    public void stopAbandonsNestedStopWatchesThatWereNotStopped() {
+        final var outer = new StopWatch("Outer");
+        final var inner = new StopWatch("Inner");
+        final var next = new StopWatch("Next");
+
+        outer.start();
+        inner.start();
+        outer.stop();
+        next.start();
+        next.stop();
+
+        assertEquals(outer.getInvocationCount(), 1L);
+        assertEquals(inner.getInvocationCount(), 0L);
+        assertTrue(next.isTopLevel());
+        assertEquals(outer.getChildren(), List.of(inner));
+    }
+
+    @Test
+    public void invocationsAreSummarizedByMinMaxAndPercentiles() {
+        final var stopWatch = new StopWatch("Load");
+        assertEquals(stopWatch.getPercentileDuration(50), 0L);
+
+        for (int i = 0; i < 100; i++) {
+            stopWatch.start();
+            stopWatch.stop();
+        }
+
+        final long min = stopWatch.getMinDuration();
+        final long max = stopWatch.getMaxDuration();
+        final long p50 = stopWatch.getPercentileDuration(50);
+        final long p99 = stopWatch.getPercentileDuration(99);
+        assertEquals(stopWatch.getInvocationCount(), 100L);
+        assertTrue(min <= p50 && p50 <= p99 && p99 <= max, stopWatch.describe());
+        assertEquals(stopWatch.getPercentileDuration(100), max);
+        assertTrue(stopWatch.describe().startsWith("Load: " + stopWatch.getTotalDuration() + "ns in 100 calls (min "));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getPercentileDurationRejectsInvalidPercentiles() {
+        new StopWatch("Load").getPercentileDuration(0);
+    }
+
+    @Test
+    public void histogramBucketsBoundTheirDurations() {
+        for (final long duration : new long[] {0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            final int index = StopWatch.bucketIndex(duration);
+            assertTrue(duration <= StopWatch.bucketUpperBound(index), String.valueOf(duration));
+            assertTrue(0 == index || duration > StopWatch.bucketUpperBound(index - 1), String.valueOf(duration));
+            // Each bucket spans at most an eighth of its lower bound, bounding the error of a percentile
+            assertTrue(StopWatch.bucketUpperBound(index) - duration <= Math.max(duration / 8, 1) + 1);
+        }
+    }
+
+    @Test
+    public void stopWatchesMayBeSharedByThreads() throws Exception {
+        final var stopWatch = new StopWatch("Load");
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 250; j++) {
+                        stopWatch.start();
+                        stopWatch.stop();
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(stopWatch.getInvocationCount(), 1000L);
     }
 
     @Test(
@@ -1,6 +1,7 @@
 package org.realityforge.proton;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
@@ -15,6 +16,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -76,6 +78,44 @@ public final class SuperficialValidationTest {
         }
     }
 
+    @Test
+    public void collectUnresolvedTypeNamesReturnsNamesOfAllUnresolvedTypes() throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler);
+        final var diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
+        final Path classOutput = Files.createTempDirectory("compile");
+        try (StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnosticCollector, Locale.getDefault(), UTF_8)) {
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classOutput));
+            final var source = new SourceJavaFileObject("com.example.Container", """
+                package com.example;
+                import java.util.List;
+                public final class Container {
+                  private Missing_Generated _missing;
+                  private List<Other> _others;
+                  public String name() { return ""; }
+                  public void accept(final Missing_Generated.Nested nested) {}
+                }
+                """);
+            final var processor = new UnresolvedTypeNameCollectingProcessor();
+            final JavaCompiler.CompilationTask task = compiler.getTask(
+                    null,
+                    fileManager,
+                    diagnosticCollector,
+                    List.of("--release", "17"),
+                    null,
+                    Collections.singletonList(source));
+            task.setProcessors(Collections.singletonList(processor));
+            // The compilation fails as the types are never generated
+            assertFalse(task.call());
+            assertEquals(processor.getUnresolvedTypeNames(), Set.of("Missing_Generated", "Other", "Missing_Generated.Nested"));
+            assertEquals(processor.getUnpromisedTypeNames(), Set.of("Other", "Missing_Generated.Nested"));
+            assertTrue(processor.isValidWhenAllPromised());
+        } finally {
+            deleteDir(classOutput);
+        }
+    }
+
     @Test
     public void isTypeOf_returnsFalseForNullType() throws Throwable {
         assertFalse(invokeIsTypeOf(String.class, new FakeNullType()));
@@ -194,6 +234,55 @@ public final class SuperficialValidationTest {
         }
     }
 
+    private static final class UnresolvedTypeNameCollectingProcessor extends AbstractProcessor {
+        private Set<String> _unresolvedTypeNames = Collections.emptySet();
+
+        private Set<String> _unpromisedTypeNames = Collections.emptySet();
+
+        private boolean _validWhenAllPromised;
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return Collections.singleton("*");
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+            if (_unresolvedTypeNames.isEmpty() && !roundEnv.processingOver()) {
+                final TypeElement type = processingEnv.getElementUtils().getTypeElement("com.example.Container");
+                assertNotNull(type);
+                assertFalse(SuperficialValidation.validateElement(processingEnv, type));
+                _unresolvedTypeNames = SuperficialValidation.collectUnresolvedTypeNames(processingEnv, type);
+                _unpromisedTypeNames =
+                        SuperficialValidation.collectUnresolvedTypeNames(processingEnv, type, "Missing_Generated"::equals);
+                _validWhenAllPromised =
+                        SuperficialValidation.validateElement(processingEnv, type, _unresolvedTypeNames::contains);
+                final Set<String> collected = new LinkedHashSet<>();
+                assertFalse(SuperficialValidation.validateElement(
+                        processingEnv, type, "Missing_Generated"::equals, collected));
+                assertEquals(collected, _unpromisedTypeNames);
+            }
+            return false;
+        }
+
+        Set<String> getUnresolvedTypeNames() {
+            return _unresolvedTypeNames;
+        }
+
+        Set<String> getUnpromisedTypeNames() {
+            return _unpromisedTypeNames;
+        }
+
+        boolean isValidWhenAllPromised() {
+            return _validWhenAllPromised;
+        }
+    }
+
     private static final class ValidationProcessor extends AbstractProcessor {
         private boolean _validated;
 
@@ -1,6 +1,7 @@
 package org.realityforge.proton;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
@@ -10,6 +11,7 @@ import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -41,6 +43,27 @@ final class TestUtil {
     }
 
     static CompilationResult compile(final List<Source> sources, final Processor processor) throws Exception {
+        return compile(sources, processor, Collections.emptyList());
+    }
+
+    static CompilationResult compile(
+            final List<Source> sources, final Processor processor, final List<String> processorOptions)
+            throws Exception {
+        return compile(sources, processor, processorOptions, true);
+    }
+
+    static CompilationResult compileWithErrors(
+            final List<Source> sources, final Processor processor, final List<String> processorOptions)
+            throws Exception {
+        return compile(sources, processor, processorOptions, false);
+    }
+
+    private static CompilationResult compile(
+            final List<Source> sources,
+            final Processor processor,
+            final List<String> processorOptions,
+            final boolean expectSuccess)
+            throws Exception {
         final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
         assertNotNull(compiler);
         final var diagnosticCollector = new DiagnosticCollector<JavaFileObject>();
@@ -51,16 +74,14 @@ final class TestUtil {
             final List<JavaFileObject> sourceObjects = sources.stream()
                     .map(source -> new SourceJavaFileObject(source.classname(), source.source()))
                     .collect(Collectors.toList());
-            final JavaCompiler.CompilationTask task = compiler.getTask(
-                    null,
-                    fileManager,
-                    diagnosticCollector,
-                    List.of("--release", "17", "-classpath", System.getProperty("java.class.path")),
-                    null,
-                    sourceObjects);
+            final List<String> options = new ArrayList<>(
+                    List.of("--release", "17", "-classpath", System.getProperty("java.class.path")));
+            processorOptions.forEach(option -> options.add("-A" + option));
+            final JavaCompiler.CompilationTask task =
+                    compiler.getTask(null, fileManager, diagnosticCollector, options, null, sourceObjects);
             task.setProcessors(Collections.singletonList(processor));
             final var result = new CompilationResult(diagnosticCollector.getDiagnostics());
-            assertTrue(task.call(), result.diagnostics());
+            assertEquals(task.call(), Boolean.valueOf(expectSuccess), result.diagnostics());
             return result;
         } finally {
             deleteDir(classOutput);
@@ -93,7 +114,7 @@ final class TestUtil {
         throw new UnsupportedOperationException(method.toString());
     }
 
-    private static void deleteDir(final Path dir) throws IOException {
+    static void deleteDir(final Path dir) throws IOException {
         try (Stream<Path> paths = Files.walk(dir)) {
             for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
                 Files.deleteIfExists(path);